@@ -0,0 +1,135 @@
+package es.enrique.springbootexercise.api;
+
+/**
+ * Java bean that represents a command sent through the {@code /commands}
+ * WebSocket channel. The operation is one of {@code find}, {@code create},
+ * {@code deposit}, {@code withdraw} or {@code transfer}, and takes the same
+ * parameters as the REST endpoint of the same name.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountCommand {
+
+	private String id;
+	private String op;
+	private String name;
+	private String currency;
+	private Boolean treasury;
+	private String nameAccountFrom;
+	private String nameAccountTo;
+	private Double money;
+
+	/**
+	 * @return the correlation id, sent back with the result
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @param id the id to set
+	 */
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the operation
+	 */
+	public String getOp() {
+		return op;
+	}
+
+	/**
+	 * @param op the op to set
+	 */
+	public void setOp(String op) {
+		this.op = op;
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name the name to set
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the currency
+	 */
+	public String getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * @param currency the currency to set
+	 */
+	public void setCurrency(String currency) {
+		this.currency = currency;
+	}
+
+	/**
+	 * @return the treasury
+	 */
+	public Boolean getTreasury() {
+		return treasury;
+	}
+
+	/**
+	 * @param treasury the treasury to set
+	 */
+	public void setTreasury(Boolean treasury) {
+		this.treasury = treasury;
+	}
+
+	/**
+	 * @return the nameAccountFrom
+	 */
+	public String getNameAccountFrom() {
+		return nameAccountFrom;
+	}
+
+	/**
+	 * @param nameAccountFrom the nameAccountFrom to set
+	 */
+	public void setNameAccountFrom(String nameAccountFrom) {
+		this.nameAccountFrom = nameAccountFrom;
+	}
+
+	/**
+	 * @return the nameAccountTo
+	 */
+	public String getNameAccountTo() {
+		return nameAccountTo;
+	}
+
+	/**
+	 * @param nameAccountTo the nameAccountTo to set
+	 */
+	public void setNameAccountTo(String nameAccountTo) {
+		this.nameAccountTo = nameAccountTo;
+	}
+
+	/**
+	 * @return the money
+	 */
+	public Double getMoney() {
+		return money;
+	}
+
+	/**
+	 * @param money the money to set
+	 */
+	public void setMoney(Double money) {
+		this.money = money;
+	}
+
+}
@@ -0,0 +1,208 @@
+package es.enrique.springbootexercise.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.enrique.springbootexercise.model.AccountView;
+import es.enrique.springbootexercise.service.AccountAlreadyExistsException;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.NegativeBalanceException;
+import es.enrique.springbootexercise.service.TransferNettingService;
+
+/**
+ * WebSocket handler of the {@code /commands} channel. Every text message is an
+ * {@link AccountCommand} in JSON, and an {@link AccountCommandResult} with the
+ * same id is sent back once it completes.
+ *
+ * Clients may pipeline as many commands as they want without waiting for the
+ * results. Commands run concurrently on a pool of workers, except those on the
+ * same account: each one waits for the commands received before it on any of
+ * its accounts, so a deposit followed by a withdrawal behaves as two
+ * sequential REST calls. Results of commands on different accounts may come
+ * back in a different order. Once the given number of commands is waiting to
+ * complete, the connection that sends another one stops being read until one
+ * of them is done.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Component
+public class AccountCommandHandler extends TextWebSocketHandler {
+
+	private static final String CONCURRENT_SESSION = "concurrentSession";
+	private static final int SEND_TIME_LIMIT = 10000;
+	private static final int SEND_BUFFER_SIZE_LIMIT = 512 * 1024;
+
+	@Autowired
+	private AccountService service;
+
+	// Only present when netting is enabled.
+	@Autowired(required = false)
+	private TransferNettingService netting;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Value("${accounts.commands.workers:8}")
+	private int workers;
+
+	@Value("${accounts.commands.queue-size:10000}")
+	private int queueSize;
+
+	private ExecutorService executor;
+	private Semaphore queued;
+
+	// Completion of the last command received on each account.
+	private final Map<String, CompletableFuture<Void>> lastCommands = new HashMap<>();
+
+	@PostConstruct
+	public void init() {
+		executor = Executors.newFixedThreadPool(workers);
+		queued = new Semaphore(queueSize);
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdown();
+	}
+
+	@Override
+	public void afterConnectionEstablished(WebSocketSession session) {
+		// Results are sent from the workers, which can't share a plain session.
+		session.getAttributes().put(CONCURRENT_SESSION,
+				new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, SEND_BUFFER_SIZE_LIMIT));
+	}
+
+	@Override
+	protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+		WebSocketSession out = (WebSocketSession) session.getAttributes().get(CONCURRENT_SESSION);
+		AccountCommand command;
+		try {
+			command = mapper.readValue(message.getPayload(), AccountCommand.class);
+		} catch (IOException e) {
+			send(out, new AccountCommandResult(null, HttpStatus.BAD_REQUEST.value(), null, "Malformed command!"));
+			return;
+		}
+		queued.acquireUninterruptibly();
+		List<String> accounts = accounts(command);
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		CompletableFuture<Void> previous;
+		synchronized (lastCommands) {
+			previous = CompletableFuture.allOf(accounts.stream().map(lastCommands::get)
+					.filter(last -> last != null).toArray(CompletableFuture[]::new));
+			accounts.forEach(account -> lastCommands.put(account, done));
+		}
+
+		previous.thenRunAsync(() -> send(out, execute(command)), executor).whenComplete((result, error) -> {
+			synchronized (lastCommands) {
+				accounts.forEach(account -> lastCommands.remove(account, done));
+			}
+			queued.release();
+			done.complete(null);
+		});
+	}
+
+	/**
+	 * @return the names of the accounts a command works on
+	 */
+	private static List<String> accounts(AccountCommand command) {
+		List<String> accounts = new ArrayList<>();
+		for (String name : new String[] { command.getName(), command.getNameAccountFrom(),
+				command.getNameAccountTo() }) {
+			if (name != null && !accounts.contains(name)) {
+				accounts.add(name);
+			}
+		}
+		return accounts;
+	}
+
+	/**
+	 * Runs a command through the same operations as the REST endpoints.
+	 */
+	AccountCommandResult execute(AccountCommand command) {
+		String op = command.getOp() == null ? "" : command.getOp();
+		try {
+			switch (op) {
+			case "find":
+				requireNonNull(command.getName());
+				return ok(command, service.findView(command.getName()));
+			case "create":
+				requireNonNull(command.getName(), command.getCurrency());
+				service.create(command.getName(), command.getCurrency(), Boolean.TRUE.equals(command.getTreasury()));
+				return ok(command, service.findView(command.getName()));
+			case "deposit":
+				requireNonNull(command.getName(), command.getMoney());
+				service.deposit(command.getName(), command.getMoney());
+				return ok(command, service.findView(command.getName()));
+			case "withdraw":
+				requireNonNull(command.getName(), command.getMoney());
+				service.withdraw(command.getName(), command.getMoney());
+				return ok(command, service.findView(command.getName()));
+			case "transfer":
+				requireNonNull(command.getNameAccountFrom(), command.getNameAccountTo(), command.getMoney());
+				if (netting != null) {
+					netting.transfer(command.getNameAccountFrom(), command.getNameAccountTo(), command.getMoney());
+					return result(command, HttpStatus.ACCEPTED, null);
+				}
+				service.transfer(command.getNameAccountFrom(), command.getNameAccountTo(), command.getMoney());
+				return ok(command, service.findView(command.getNameAccountFrom()));
+			default:
+				return result(command, HttpStatus.BAD_REQUEST, "Unknown operation!");
+			}
+		} catch (IllegalArgumentException | AccountAlreadyExistsException | NegativeBalanceException e) {
+			return result(command, HttpStatus.BAD_REQUEST, e.getMessage());
+		} catch (AccountNotFoundException e) {
+			return result(command, HttpStatus.NOT_FOUND, e.getMessage());
+		} catch (RuntimeException e) {
+			return result(command, HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+		}
+	}
+
+	private static void requireNonNull(Object... parameters) {
+		for (Object parameter : parameters) {
+			if (parameter == null) {
+				throw new IllegalArgumentException("Missing parameters!");
+			}
+		}
+	}
+
+	private static AccountCommandResult ok(AccountCommand command, AccountView account) {
+		return new AccountCommandResult(command.getId(), HttpStatus.OK.value(), account, null);
+	}
+
+	private static AccountCommandResult result(AccountCommand command, HttpStatus status, String error) {
+		return new AccountCommandResult(command.getId(), status.value(), null, error);
+	}
+
+	private void send(WebSocketSession session, AccountCommandResult result) {
+		try {
+			session.sendMessage(new TextMessage(mapper.writeValueAsString(result)));
+		} catch (IOException | SessionLimitExceededException e) {
+			// The client is gone or not reading its results, the session is closed.
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package es.enrique.springbootexercise.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import es.enrique.springbootexercise.model.AccountView;
+
+/**
+ * Java bean that represents the result of an {@link AccountCommand}. The
+ * status is the one the REST endpoint would have responded with, and the
+ * account the one it would have returned.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountCommandResult {
+
+	private final String id;
+	private final int status;
+	private final AccountView account;
+	private final String error;
+
+	public AccountCommandResult(String id, int status, AccountView account, String error) {
+		this.id = id;
+		this.status = status;
+		this.account = account;
+		this.error = error;
+	}
+
+	/**
+	 * @return the correlation id of the command
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the status
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the account
+	 */
+	public AccountView getAccount() {
+		return account;
+	}
+
+	/**
+	 * @return the error
+	 */
+	public String getError() {
+		return error;
+	}
+
+}
@@ -1,18 +1,38 @@
 package es.enrique.springbootexercise.api;
 
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountBalance;
+import es.enrique.springbootexercise.model.AccountLookup;
+import es.enrique.springbootexercise.model.AccountOperation;
+import es.enrique.springbootexercise.model.AccountOperation.Type;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
 import es.enrique.springbootexercise.service.AccountAlreadyExistsException;
 import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountOperationService;
 import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.BalanceHistoryService;
 import es.enrique.springbootexercise.service.NegativeBalanceException;
+import es.enrique.springbootexercise.service.TransferNettingService;
 
 /**
  * RESTful controller that provides an API to perform operations over accounts
@@ -24,9 +44,23 @@ import es.enrique.springbootexercise.service.NegativeBalanceException;
 @RestController
 public class AccountController {
 
+	private static final int MAX_SEARCH_LIMIT = 1000;
+	private static final int MAX_LOOKUP_NAMES = 10000;
+
 	@Autowired
 	private AccountService service;
 
+	@Autowired
+	private BalanceHistoryService history;
+
+	// Only present when netting is enabled.
+	@Autowired(required = false)
+	private TransferNettingService netting;
+
+	// Only present when asynchronous writes are enabled.
+	@Autowired(required = false)
+	private AccountOperationService operations;
+
 	/**
 	 * Find an account by the given parameter and returns its information. Returns
 	 * 404 status if no account is found.
@@ -35,15 +69,81 @@ public class AccountController {
 	 * @return The info of the account as a ResponseEntity.
 	 */
 	@GetMapping("find")
-	public ResponseEntity<Account> find(@RequestParam(value = "name") String name) {
+	public ResponseEntity<AccountView> find(@RequestParam(value = "name") String name) {
 		try {
-			Account account = service.find(name);
-			return new ResponseEntity<Account>(account, HttpStatus.OK);
+			AccountView account = service.findView(name);
+			return new ResponseEntity<AccountView>(account, HttpStatus.OK);
 		} catch (AccountNotFoundException e) {
 			// In case no account exists, return 404 status
-			return new ResponseEntity<Account>(HttpStatus.NOT_FOUND);
+			return new ResponseEntity<AccountView>(HttpStatus.NOT_FOUND);
+		}
+
+	}
+
+	/**
+	 * Finds the accounts whose name starts with the given prefix, ignoring case.
+	 * Returns 400 status if the limit isn't between 1 and 1000.
+	 * 
+	 * @param prefix The start of the names to look for.
+	 * @param limit  The maximum number of accounts to return. Defaults to 50.
+	 * @return The id and name of the accounts found, in name order.
+	 */
+	@GetMapping("accounts/search")
+	public ResponseEntity<List<AccountSummary>> search(@RequestParam(value = "prefix") String prefix,
+			@RequestParam(value = "limit", defaultValue = "50") int limit) {
+		if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+			return new ResponseEntity<List<AccountSummary>>(HttpStatus.BAD_REQUEST);
+		}
+		return new ResponseEntity<List<AccountSummary>>(service.search(prefix, limit), HttpStatus.OK);
+	}
+
+	/**
+	 * Finds the accounts with the given names at once. Returns 400 status if more
+	 * than 10000 names are given.
+	 * 
+	 * @param names The names of the accounts to find, as a JSON array.
+	 * @return The accounts found and the names not associated to any account.
+	 */
+	@PostMapping("accounts/lookup")
+	public ResponseEntity<AccountLookup> lookup(@RequestBody List<String> names) {
+		if (names.size() > MAX_LOOKUP_NAMES) {
+			return new ResponseEntity<AccountLookup>(HttpStatus.BAD_REQUEST);
 		}
 
+		Map<String, AccountView> found = new HashMap<>();
+		for (AccountView account : service.findViews(names)) {
+			found.put(account.getName(), account);
+		}
+
+		List<AccountView> accounts = new ArrayList<>(found.size());
+		List<String> missing = new ArrayList<>();
+		for (String name : new LinkedHashSet<>(names)) {
+			AccountView account = found.get(name);
+			if (account != null) {
+				accounts.add(account);
+			} else {
+				missing.add(name);
+			}
+		}
+		return new ResponseEntity<AccountLookup>(new AccountLookup(accounts, missing), HttpStatus.OK);
+	}
+
+	/**
+	 * Returns the balance an account had at the given time. Returns 404 status if
+	 * no account is found or it didn't exist at that time.
+	 * 
+	 * @param name The name of the account.
+	 * @param at   The time of the balance, as an ISO-8601 instant.
+	 * @return The balance of the account at that time.
+	 */
+	@GetMapping("accounts/{name}/balance")
+	public ResponseEntity<AccountBalance> balance(@PathVariable(value = "name") String name,
+			@RequestParam(value = "at") Instant at) {
+		try {
+			return new ResponseEntity<AccountBalance>(history.balanceAt(name, at), HttpStatus.OK);
+		} catch (AccountNotFoundException e) {
+			return new ResponseEntity<AccountBalance>(HttpStatus.NOT_FOUND);
+		}
 	}
 
 	/**
@@ -57,17 +157,17 @@ public class AccountController {
 	 * @return The newly created account as a ResponseBody.
 	 */
 	@PostMapping("create")
-	public ResponseEntity<Account> create(@RequestParam(value = "name") String name,
+	public ResponseEntity<AccountView> create(@RequestParam(value = "name") String name,
 			@RequestParam(value = "currency") String currency,
 			@RequestParam(value = "treasury", defaultValue = "false") boolean treasury) {
 		try {
 			service.create(name, currency, treasury);
-			Account account = service.find(name);
-			return new ResponseEntity<Account>(account, HttpStatus.OK);
+			AccountView account = service.findView(name);
+			return new ResponseEntity<AccountView>(account, HttpStatus.OK);
 		} catch (AccountAlreadyExistsException e) {
-			return new ResponseEntity<Account>(HttpStatus.BAD_REQUEST);
+			return new ResponseEntity<AccountView>(HttpStatus.BAD_REQUEST);
 		} catch (AccountNotFoundException e) {
-			return new ResponseEntity<Account>(HttpStatus.NOT_FOUND);
+			return new ResponseEntity<AccountView>(HttpStatus.NOT_FOUND);
 		}
 	}
 
@@ -75,19 +175,25 @@ public class AccountController {
 	 * Increments the amount of money in the given account by the amount specified.
 	 * Return 404 status if the account doesn't exist.
 	 * 
+	 * When asynchronous writes are enabled the deposit is only accepted, and 202
+	 * status is returned with the location of the operation and no body.
+	 * 
 	 * @param name  The account in which to increase the balance.
 	 * @param money The amount of money to increase.
 	 * @return The account as a ResponseBody.
 	 */
 	@PostMapping("deposit")
-	public ResponseEntity<Account> deposit(@RequestParam(value = "name") String name,
+	public ResponseEntity<AccountView> deposit(@RequestParam(value = "name") String name,
 			@RequestParam(value = "money") double money) {
+		if (operations != null) {
+			return accepted(operations.submit(Type.DEPOSIT, name, null, money));
+		}
 		try {
 			service.deposit(name, money);
-			Account account = service.find(name);
-			return new ResponseEntity<Account>(account, HttpStatus.OK);
+			AccountView account = service.findView(name);
+			return new ResponseEntity<AccountView>(account, HttpStatus.OK);
 		} catch (AccountNotFoundException e) {
-			return new ResponseEntity<Account>(HttpStatus.NOT_FOUND);
+			return new ResponseEntity<AccountView>(HttpStatus.NOT_FOUND);
 		}
 	}
 
@@ -98,21 +204,27 @@ public class AccountController {
 	 * If the withdrawal would make the account's balance go negative and it's not a
 	 * treasury account, returns 400 status.
 	 * 
+	 * When asynchronous writes are enabled the withdrawal is only accepted, and 202
+	 * status is returned with the location of the operation and no body.
+	 * 
 	 * @param name  The account in which to decrease the balance.
 	 * @param money The amount of money to withdraw.
 	 * @return The account as a ResponseBody.
 	 */
 	@PostMapping("withdraw")
-	public ResponseEntity<Account> withdraw(@RequestParam(value = "name") String name,
+	public ResponseEntity<AccountView> withdraw(@RequestParam(value = "name") String name,
 			@RequestParam(value = "money") double money) {
+		if (operations != null) {
+			return accepted(operations.submit(Type.WITHDRAW, name, null, money));
+		}
 		try {
 			service.withdraw(name, money);
-			Account account = service.find(name);
-			return new ResponseEntity<Account>(account, HttpStatus.OK);
+			AccountView account = service.findView(name);
+			return new ResponseEntity<AccountView>(account, HttpStatus.OK);
 		} catch (AccountNotFoundException e) {
-			return new ResponseEntity<Account>(HttpStatus.NOT_FOUND);
+			return new ResponseEntity<AccountView>(HttpStatus.NOT_FOUND);
 		} catch (NegativeBalanceException e) {
-			return new ResponseEntity<Account>(HttpStatus.BAD_REQUEST);
+			return new ResponseEntity<AccountView>(HttpStatus.BAD_REQUEST);
 		}
 	}
 
@@ -124,23 +236,43 @@ public class AccountController {
 	 * If the withdrawal would make the account's balance go negative and it's not a
 	 * treasury account, returns 400 status.
 	 * 
+	 * When netting is enabled the transfer is only accepted, to be written with the
+	 * next flush, and 202 status is returned with no body. When asynchronous writes
+	 * are enabled it's accepted as an operation instead, and 202 status is returned
+	 * with the location of the operation.
+	 * 
 	 * @param nameAccountFrom The account from where the money is sent.
 	 * @param nameAccountTo   The account that receives the money.
 	 * @param money           The amount of money to transfer.
 	 * @return The account as a ResponseBody.
 	 */
 	@PostMapping("transfer")
-	public ResponseEntity<Account> transfer(@RequestParam(value = "nameAccountFrom") String nameAccountFrom,
+	public ResponseEntity<AccountView> transfer(@RequestParam(value = "nameAccountFrom") String nameAccountFrom,
 			@RequestParam(value = "nameAccountTo") String nameAccountTo, @RequestParam(value = "money") double money) {
+		if (operations != null) {
+			return accepted(operations.submit(Type.TRANSFER, nameAccountFrom, nameAccountTo, money));
+		}
 		try {
+			if (netting != null) {
+				netting.transfer(nameAccountFrom, nameAccountTo, money);
+				return new ResponseEntity<AccountView>(HttpStatus.ACCEPTED);
+			}
 			service.transfer(nameAccountFrom, nameAccountTo, money);
-			Account account = service.find(nameAccountFrom);
-			return new ResponseEntity<Account>(account, HttpStatus.OK);
+			AccountView account = service.findView(nameAccountFrom);
+			return new ResponseEntity<AccountView>(account, HttpStatus.OK);
 		} catch (AccountNotFoundException e) {
-			return new ResponseEntity<Account>(HttpStatus.NOT_FOUND);
+			return new ResponseEntity<AccountView>(HttpStatus.NOT_FOUND);
 		} catch (NegativeBalanceException e) {
-			return new ResponseEntity<Account>(HttpStatus.BAD_REQUEST);
+			return new ResponseEntity<AccountView>(HttpStatus.BAD_REQUEST);
 		}
 	}
 
+	private ResponseEntity<AccountView> accepted(AccountOperation operation) {
+		URI location = ServletUriComponentsBuilder.fromCurrentContextPath().path("/operations/{id}")
+				.buildAndExpand(operation.getId()).toUri();
+		HttpHeaders headers = new HttpHeaders();
+		headers.setLocation(location);
+		return new ResponseEntity<AccountView>(headers, HttpStatus.ACCEPTED);
+	}
+
 }
@@ -0,0 +1,88 @@
+package es.enrique.springbootexercise.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import es.enrique.springbootexercise.model.AccountOperation;
+import es.enrique.springbootexercise.service.AccountOperationNotFoundException;
+import es.enrique.springbootexercise.service.AccountOperationService;
+
+/**
+ * RESTful controller that provides an API to follow the operations accepted
+ * when asynchronous writes are enabled.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@RestController
+@ConditionalOnProperty(name = "accounts.async.enabled", havingValue = "true")
+public class AccountOperationController {
+
+	private static final long MAX_WAIT_SECONDS = 30;
+
+	@Autowired
+	private AccountOperationService service;
+
+	/**
+	 * Returns an operation, with its outcome once it's applied. Returns 404 status
+	 * if no operation has the given id, and 400 status if the wait isn't between
+	 * 0 and 30 seconds.
+	 *
+	 * The request is held until the operation is applied or the wait is over,
+	 * without holding a thread meanwhile. If the wait is over first, the operation
+	 * is returned still pending.
+	 *
+	 * @param id   The id of the operation.
+	 * @param wait The seconds to wait for the outcome. Defaults to 0.
+	 * @return The operation as a ResponseBody, once available.
+	 */
+	@GetMapping("operations/{id}")
+	public DeferredResult<ResponseEntity<AccountOperation>> find(@PathVariable(value = "id") Long id,
+			@RequestParam(value = "wait", defaultValue = "0") long wait) {
+		DeferredResult<ResponseEntity<AccountOperation>> result = new DeferredResult<>(
+				TimeUnit.SECONDS.toMillis(Math.max(wait, 1)));
+		if (wait < 0 || wait > MAX_WAIT_SECONDS) {
+			result.setResult(new ResponseEntity<AccountOperation>(HttpStatus.BAD_REQUEST));
+			return result;
+		}
+
+		try {
+			if (wait == 0) {
+				result.setResult(new ResponseEntity<AccountOperation>(service.find(id), HttpStatus.OK));
+				return result;
+			}
+			CompletableFuture<AccountOperation> completion = service.completion(id);
+			completion.thenAccept(
+					operation -> result.setResult(new ResponseEntity<AccountOperation>(operation, HttpStatus.OK)));
+			// Stops waiting, or the future stays registered until the operation is applied.
+			result.onTimeout(() -> {
+				completion.cancel(false);
+				result.setResult(current(id));
+			});
+			result.onError(error -> completion.cancel(false));
+		} catch (AccountOperationNotFoundException e) {
+			result.setResult(new ResponseEntity<AccountOperation>(HttpStatus.NOT_FOUND));
+		}
+		return result;
+	}
+
+	private ResponseEntity<AccountOperation> current(Long id) {
+		try {
+			AccountOperation operation = service.find(id);
+			return new ResponseEntity<AccountOperation>(operation, HttpStatus.OK);
+		} catch (AccountOperationNotFoundException e) {
+			return new ResponseEntity<AccountOperation>(HttpStatus.NOT_FOUND);
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package es.enrique.springbootexercise.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+
+/**
+ * Sends the requests for an account to the node that owns it in cluster mode,
+ * either redirecting the client with 307 status or proxying the request and
+ * copying back the response. Proxied requests and responses keep their
+ * headers, except those that only apply to a single connection.
+ *
+ * Proxied requests carry the {@value #FORWARDED_HEADER} header and are always
+ * served by the node receiving them, so a request is never forwarded twice
+ * while the nodes disagree about the owner.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountOwnershipInterceptor implements HandlerInterceptor {
+
+	public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+	/**
+	 * How requests reach the owner of their account.
+	 */
+	public enum ForwardMode {
+		REDIRECT, PROXY
+	}
+
+	private static final String[] ACCOUNT_PARAMETERS = { "name", "nameAccountFrom" };
+
+	// Hop-by-hop headers, plus the ones set again for the new connection.
+	private static final Set<String> UNFORWARDED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+	static {
+		UNFORWARDED_HEADERS.addAll(Arrays.asList(HttpHeaders.CONNECTION, "Keep-Alive",
+				HttpHeaders.PROXY_AUTHENTICATE, HttpHeaders.PROXY_AUTHORIZATION, HttpHeaders.TE, HttpHeaders.TRAILER,
+				HttpHeaders.TRANSFER_ENCODING, HttpHeaders.UPGRADE, HttpHeaders.HOST, HttpHeaders.CONTENT_LENGTH));
+	}
+
+	private final AccountOwnershipService ownership;
+	private final RestTemplate rest;
+	private final ForwardMode mode;
+
+	public AccountOwnershipInterceptor(AccountOwnershipService ownership, RestTemplate rest, ForwardMode mode) {
+		this.ownership = ownership;
+		this.rest = rest;
+		this.mode = mode;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws IOException {
+		String name = accountName(request);
+		if (name == null || request.getHeader(FORWARDED_HEADER) != null) {
+			return true;
+		}
+		String owner = ownership.ownerOf(name);
+		if (owner == null) {
+			return true;
+		}
+
+		if (mode == ForwardMode.REDIRECT) {
+			response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+			response.setHeader(HttpHeaders.LOCATION, UriComponentsBuilder.fromHttpUrl(owner)
+					.path(request.getRequestURI()).query(request.getQueryString()).build(true).toUriString());
+		} else {
+			proxy(owner, request, response);
+		}
+		return false;
+	}
+
+	private static String accountName(HttpServletRequest request) {
+		for (String parameter : ACCOUNT_PARAMETERS) {
+			String name = request.getParameter(parameter);
+			if (name != null) {
+				return name;
+			}
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, String> variables = (Map<String, String>) request
+				.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		return variables != null ? variables.get("name") : null;
+	}
+
+	private void proxy(String owner, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(owner).path(request.getRequestURI());
+		HttpHeaders headers = new HttpHeaders();
+		for (String header : Collections.list(request.getHeaderNames())) {
+			if (!UNFORWARDED_HEADERS.contains(header)) {
+				headers.addAll(header, Collections.list(request.getHeaders(header)));
+			}
+		}
+		headers.set(FORWARDED_HEADER, ownership.getNodeUrl());
+
+		Object body;
+		if (request.getContentType() != null
+				&& MediaType.APPLICATION_FORM_URLENCODED.includes(MediaType.parseMediaType(request.getContentType()))) {
+			// The parameters were read from the body already, send them all as a form.
+			MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+			for (Map.Entry<String, String[]> parameter : request.getParameterMap().entrySet()) {
+				for (String value : parameter.getValue()) {
+					form.add(parameter.getKey(), value);
+				}
+			}
+			headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+			body = form;
+		} else {
+			uri.query(request.getQueryString());
+			byte[] content = StreamUtils.copyToByteArray(request.getInputStream());
+			body = content.length > 0 ? content : null;
+		}
+
+		URI target = uri.build(true).toUri();
+		ResponseEntity<byte[]> proxied = rest.exchange(target, HttpMethod.resolve(request.getMethod()),
+				new HttpEntity<>(body, headers), byte[].class);
+
+		response.setStatus(proxied.getStatusCodeValue());
+		proxied.getHeaders().forEach((header, values) -> {
+			if (!UNFORWARDED_HEADERS.contains(header)) {
+				values.forEach(value -> response.addHeader(header, value));
+			}
+		});
+		if (proxied.getBody() != null) {
+			response.getOutputStream().write(proxied.getBody());
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package es.enrique.springbootexercise.api;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import es.enrique.springbootexercise.dao.routing.ClientSessionHolder;
+
+/**
+ * Binds the client session sent in the {@value #SESSION_HEADER} header to the
+ * thread serving the request, so reads are routed to a datasource that holds
+ * the writes previously made by the same client.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class ClientSessionInterceptor implements HandlerInterceptor {
+
+	public static final String SESSION_HEADER = "X-Client-Session";
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		ClientSessionHolder.begin(request.getHeader(SESSION_HEADER));
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		ClientSessionHolder.clear();
+	}
+
+}
@@ -0,0 +1,66 @@
+package es.enrique.springbootexercise.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import es.enrique.springbootexercise.dao.AccountNameIndex;
+import es.enrique.springbootexercise.service.impl.AccountViewCache;
+
+/**
+ * RESTful controller the nodes of the cluster use to talk to each other.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@RestController
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class ClusterController {
+
+	@Autowired
+	private AccountViewCache cache;
+
+	@Autowired
+	private AccountNameIndex nameIndex;
+
+	/**
+	 * Drops the cached view of an account changed by another node.
+	 * 
+	 * @param name The name of the changed account.
+	 * @return 204 status.
+	 */
+	@PostMapping("cluster/evict")
+	public ResponseEntity<Void> evict(@RequestParam(value = "name") String name) {
+		cache.evict(name);
+		return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+	}
+
+	/**
+	 * Drops every cached view after another node changed many accounts at once.
+	 * 
+	 * @return 204 status.
+	 */
+	@PostMapping("cluster/clear")
+	public ResponseEntity<Void> clear() {
+		cache.clear();
+		return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+	}
+
+	/**
+	 * Adds an account created by another node to the name index.
+	 * 
+	 * @param id   The id of the new account.
+	 * @param name The name of the new account.
+	 * @return 204 status.
+	 */
+	@PostMapping("cluster/names")
+	public ResponseEntity<Void> add(@RequestParam(value = "id") Integer id, @RequestParam(value = "name") String name) {
+		nameIndex.add(id, name);
+		return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+	}
+
+}
@@ -0,0 +1,152 @@
+package es.enrique.springbootexercise.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import es.enrique.springbootexercise.service.AccountExportService;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+
+/**
+ * RESTful controller that provides an API to download statements and dumps of
+ * the accounts as CSV. Not available with sharded storage.
+ *
+ * The responses are written straight to the connection, never buffered whole.
+ * Dumps are sent from their file with sendfile when the container supports it,
+ * so they are copied to the socket by the kernel. Otherwise they are copied
+ * through the response buffer like any other body.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@RestController
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ExportController {
+
+	public static final String TEXT_CSV = "text/csv;charset=UTF-8";
+
+	// Request attributes of the Tomcat sendfile support.
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	@Autowired
+	private AccountExportService service;
+
+	/**
+	 * Downloads the statement of an account: every change of its balance in the
+	 * given period, with the balance after it. Returns 404 status if no account is
+	 * found.
+	 *
+	 * @param name     The name of the account.
+	 * @param from     The start of the period, exclusive, as an ISO-8601 instant.
+	 *                 Defaults to the creation of the account.
+	 * @param to       The end of the period, inclusive, as an ISO-8601 instant.
+	 *                 Defaults to now.
+	 * @param response The response the statement is written to.
+	 * @throws IOException If the statement can't be sent.
+	 */
+	@GetMapping("exports/accounts/{name}/statement")
+	public void statement(@PathVariable(value = "name") String name,
+			@RequestParam(value = "from", required = false) Instant from,
+			@RequestParam(value = "to", required = false) Instant to, HttpServletResponse response)
+			throws IOException {
+		response.setContentType(TEXT_CSV);
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, attachment("statement.csv"));
+		try {
+			service.writeStatement(name, from, to != null ? to : Instant.now(), response.getOutputStream());
+		} catch (AccountNotFoundException e) {
+			// Nothing was written yet.
+			response.reset();
+			response.setStatus(HttpStatus.NOT_FOUND.value());
+		}
+	}
+
+	/**
+	 * Writes a new dump of every account, to be downloaded from
+	 * {@code exports/accounts}.
+	 *
+	 * @return 201 status with the location of the dump.
+	 * @throws IOException If the dump can't be written.
+	 */
+	@PostMapping("exports/accounts")
+	public ResponseEntity<Void> exportAccounts() throws IOException {
+		service.exportAccounts();
+		URI location = ServletUriComponentsBuilder.fromCurrentContextPath().path("/exports/accounts").build()
+				.toUri();
+		HttpHeaders headers = new HttpHeaders();
+		headers.setLocation(location);
+		return new ResponseEntity<Void>(headers, HttpStatus.CREATED);
+	}
+
+	/**
+	 * Downloads the latest dump of every account. Returns 404 status if no dump
+	 * was written yet.
+	 *
+	 * @param request  The request being served.
+	 * @param response The response the dump is sent with.
+	 * @throws IOException If the dump can't be sent.
+	 */
+	@GetMapping("exports/accounts")
+	public void downloadAccounts(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Path export = service.latestAccountsExport();
+		if (export == null) {
+			response.setStatus(HttpStatus.NOT_FOUND.value());
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(export, StandardOpenOption.READ)) {
+			long size = channel.size();
+			response.setContentType(TEXT_CSV);
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, attachment("accounts.csv"));
+			response.setContentLengthLong(size);
+
+			if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+				// Sent by the container once the request is done. The previous export is kept
+				// when a new one is written, so the file is still there.
+				request.setAttribute(SENDFILE_FILENAME, export.toAbsolutePath().toString());
+				request.setAttribute(SENDFILE_START, 0L);
+				request.setAttribute(SENDFILE_END, size);
+				return;
+			}
+
+			// Not zero-copy: the stream of the response isn't backed by a channel, so the
+			// file goes through a buffer on its way there.
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			for (long position = 0; position < size;) {
+				position += channel.transferTo(position, size - position, out);
+			}
+		} catch (NoSuchFileException e) {
+			// Replaced by two newer exports meanwhile.
+			response.setStatus(HttpStatus.NOT_FOUND.value());
+		}
+	}
+
+	private static String attachment(String filename) {
+		return ContentDisposition.builder("attachment").filename(filename).build().toString();
+	}
+
+}
@@ -0,0 +1,81 @@
+package es.enrique.springbootexercise.api;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import es.enrique.springbootexercise.model.ScheduledTransfer;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.ScheduledTransferNotFoundException;
+import es.enrique.springbootexercise.service.ScheduledTransferService;
+
+/**
+ * RESTful controller that provides an API to schedule transfers to be executed
+ * later, once or repeatedly.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@RestController
+public class ScheduledTransferController {
+
+	@Autowired
+	private ScheduledTransferService service;
+
+	/**
+	 * Schedules a transfer of the amount of money specified from the first account
+	 * to the second.
+	 *
+	 * If any of the accounts doesn't exist, returns a 404. If the repetition isn't
+	 * a positive number of seconds, returns 400 status.
+	 *
+	 * @param nameAccountFrom The account from where the money is sent.
+	 * @param nameAccountTo   The account that receives the money.
+	 * @param money           The amount of money to transfer.
+	 * @param executeAt       The time of the first execution, as an ISO-8601
+	 *                        instant.
+	 * @param repeatSeconds   The seconds between executions. If missing, the
+	 *                        transfer is executed only once.
+	 * @return The scheduled transfer as a ResponseBody.
+	 */
+	@PostMapping("scheduled-transfers")
+	public ResponseEntity<ScheduledTransfer> schedule(@RequestParam(value = "nameAccountFrom") String nameAccountFrom,
+			@RequestParam(value = "nameAccountTo") String nameAccountTo, @RequestParam(value = "money") double money,
+			@RequestParam(value = "executeAt") Instant executeAt,
+			@RequestParam(value = "repeatSeconds", required = false) Long repeatSeconds) {
+		if (repeatSeconds != null && repeatSeconds <= 0) {
+			return new ResponseEntity<ScheduledTransfer>(HttpStatus.BAD_REQUEST);
+		}
+		try {
+			ScheduledTransfer transfer = service.schedule(nameAccountFrom, nameAccountTo, money, executeAt,
+					repeatSeconds);
+			return new ResponseEntity<ScheduledTransfer>(transfer, HttpStatus.OK);
+		} catch (AccountNotFoundException e) {
+			return new ResponseEntity<ScheduledTransfer>(HttpStatus.NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Returns a scheduled transfer, with the outcome of its last execution.
+	 * Returns 404 status if no scheduled transfer has the given id.
+	 *
+	 * @param id The id of the scheduled transfer.
+	 * @return The scheduled transfer as a ResponseBody.
+	 */
+	@GetMapping("scheduled-transfers/{id}")
+	public ResponseEntity<ScheduledTransfer> find(@PathVariable(value = "id") Long id) {
+		try {
+			return new ResponseEntity<ScheduledTransfer>(service.find(id), HttpStatus.OK);
+		} catch (ScheduledTransferNotFoundException e) {
+			return new ResponseEntity<ScheduledTransfer>(HttpStatus.NOT_FOUND);
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package es.enrique.springbootexercise.api;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import es.enrique.springbootexercise.dao.statistics.SqlStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Records the SQL statements, rows and database time of each request as
+ * metrics tagged by the request mapping, and counts the requests issuing more
+ * statements than the budget in {@value #BUDGET_EXCEEDED}.
+ *
+ * With debug headers enabled the numbers are also sent back in the
+ * {@value #STATEMENTS_HEADER}, {@value #ROWS_HEADER}, {@value #TIME_HEADER}
+ * and {@value #BUDGET_HEADER} headers. The body is buffered so the headers can
+ * be added once the request is done, except for exports, which are too
+ * large to be buffered. Only statements run on the threads serving the request
+ * are counted.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.sql.statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+	public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+	public static final String ROWS_HEADER = "X-Sql-Rows";
+	public static final String TIME_HEADER = "X-Sql-Time";
+	public static final String BUDGET_HEADER = "X-Sql-Budget-Exceeded";
+
+	public static final String BUDGET_EXCEEDED = "accounts.sql.budget.exceeded";
+
+	private static final String EXPORTS_PATH = "/exports/";
+
+	private static final String EARLIER_DISPATCHES = SqlStatisticsFilter.class.getName() + ".EARLIER_DISPATCHES";
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Value("${accounts.sql.statement-budget:10}")
+	private int statementBudget;
+
+	@Value("${accounts.sql.debug-headers:false}")
+	private boolean debugHeaders;
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		// Async requests are recorded when their last dispatch is done.
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		SqlStatistics start = SqlStatistics.current().snapshot();
+		HttpServletResponse target = response;
+		if (debugHeaders && !"websocket".equalsIgnoreCase(request.getHeader("Upgrade"))
+				&& !request.getRequestURI().startsWith(request.getContextPath() + EXPORTS_PATH)
+				&& WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class) == null) {
+			target = new ContentCachingResponseWrapper(response);
+		}
+		try {
+			chain.doFilter(request, target);
+		} finally {
+			SqlStatistics used = SqlStatistics.current().since(start);
+			SqlStatistics earlier = (SqlStatistics) request.getAttribute(EARLIER_DISPATCHES);
+			if (earlier != null) {
+				used = used.plus(earlier);
+			}
+
+			if (isAsyncStarted(request)) {
+				request.setAttribute(EARLIER_DISPATCHES, used);
+			} else {
+				boolean exceeded = record(request, used);
+				ContentCachingResponseWrapper buffered = WebUtils.getNativeResponse(target,
+						ContentCachingResponseWrapper.class);
+				if (buffered != null) {
+					buffered.setHeader(STATEMENTS_HEADER, String.valueOf(used.getStatements()));
+					buffered.setHeader(ROWS_HEADER, String.valueOf(used.getRows()));
+					buffered.setHeader(TIME_HEADER, String.valueOf(TimeUnit.NANOSECONDS.toMillis(used.getNanos())));
+					buffered.setHeader(BUDGET_HEADER, String.valueOf(exceeded));
+					buffered.copyBodyToResponse();
+				}
+			}
+		}
+	}
+
+	private boolean record(HttpServletRequest request, SqlStatistics used) {
+		// The mapping, not the path, so path variables don't create a meter each.
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+		String method = request.getMethod();
+
+		registry.summary("accounts.sql.statements", "uri", uri, "method", method).record(used.getStatements());
+		registry.summary("accounts.sql.rows", "uri", uri, "method", method).record(used.getRows());
+		registry.timer("accounts.sql.time", "uri", uri, "method", method).record(used.getNanos(),
+				TimeUnit.NANOSECONDS);
+
+		if (used.getStatements() <= statementBudget) {
+			return false;
+		}
+		registry.counter(BUDGET_EXCEEDED, "uri", uri, "method", method).increment();
+		return true;
+	}
+
+}
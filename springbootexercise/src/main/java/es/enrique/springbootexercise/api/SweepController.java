@@ -0,0 +1,56 @@
+package es.enrique.springbootexercise.api;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import es.enrique.springbootexercise.model.SweepReport;
+import es.enrique.springbootexercise.service.AccountSweepService;
+import es.enrique.springbootexercise.service.SweepConflictException;
+
+/**
+ * RESTful controller that provides an API to apply interest and fees to every
+ * account. Not available with sharded storage.
+ * 
+ * @author Enrique Rosales
+ *
+ */
+@RestController
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class SweepController {
+
+	@Autowired
+	private AccountSweepService service;
+
+	/**
+	 * Runs the sweep with the given id, resuming it if it was interrupted. Returns
+	 * 400 status if a rate is negative, and 409 status if the sweep was started
+	 * before with other rates.
+	 * 
+	 * @param id           The id of the sweep, like the month it closes.
+	 * @param interestRate The interest applied to positive balances, as a
+	 *                     fraction of the balance.
+	 * @param fee          The fee charged to non-treasury accounts.
+	 * @return The report of the run as a ResponseEntity.
+	 */
+	@PostMapping("sweeps")
+	public ResponseEntity<SweepReport> sweep(@RequestParam(value = "id") String id,
+			@RequestParam(value = "interestRate") BigDecimal interestRate,
+			@RequestParam(value = "fee") BigDecimal fee) {
+		if (interestRate.signum() < 0 || fee.signum() < 0) {
+			return new ResponseEntity<SweepReport>(HttpStatus.BAD_REQUEST);
+		}
+		try {
+			return new ResponseEntity<SweepReport>(service.sweep(id, interestRate, fee), HttpStatus.OK);
+		} catch (SweepConflictException e) {
+			return new ResponseEntity<SweepReport>(HttpStatus.CONFLICT);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package es.enrique.springbootexercise.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import es.enrique.springbootexercise.api.AccountOwnershipInterceptor;
+import es.enrique.springbootexercise.api.AccountOwnershipInterceptor.ForwardMode;
+import es.enrique.springbootexercise.dao.cluster.InMemoryLeaseCoordinator;
+import es.enrique.springbootexercise.dao.cluster.LeaseCoordinator;
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.impl.AccountViewCache;
+import es.enrique.springbootexercise.service.impl.OwnedAccountService;
+
+/**
+ * Runs the node as a member of a cluster when {@code accounts.cluster.enabled}
+ * is set. Accounts are assigned to the nodes by
+ * {@link es.enrique.springbootexercise.service.impl.AccountOwnershipServiceImpl}
+ * and the requests for an account are sent to its owner. Every
+ * {@link AccountService} injected goes through an {@link OwnedAccountService},
+ * whichever storage it uses. Views aren't cached when netting is enabled.
+ *
+ * Without a {@link LeaseCoordinator} bean of its own, the nodes coordinate
+ * through the {@link InMemoryLeaseCoordinator}, so they must all run in the
+ * same JVM.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class ClusterConfig implements WebMvcConfigurer {
+
+	@Lazy
+	@Autowired
+	private AccountOwnershipService ownership;
+
+	@Lazy
+	@Autowired
+	private RestTemplate clusterRestTemplate;
+
+	@Value("${accounts.cluster.forward:REDIRECT}")
+	private ForwardMode forward;
+
+	@Bean
+	@ConditionalOnMissingBean
+	public LeaseCoordinator leaseCoordinator() {
+		return InMemoryLeaseCoordinator.shared();
+	}
+
+	@Bean
+	@Primary
+	public AccountService ownedAccountService(@Qualifier(AccountService.STORAGE) AccountService storage,
+			AccountOwnershipService ownership, AccountViewCache cache,
+			@Value("${accounts.netting.enabled:false}") boolean netting) {
+		// Netted transfers are written straight to the database, so nothing could evict their views.
+		return new OwnedAccountService(storage, ownership, netting ? null : cache);
+	}
+
+	@Bean
+	public RestTemplate clusterRestTemplate(RestTemplateBuilder builder,
+			@Value("${accounts.cluster.lease-ttl:3000}") long leaseTtl) {
+		// Error responses of the owner are passed on as they are.
+		return builder.setConnectTimeout(Duration.ofMillis(leaseTtl)).setReadTimeout(Duration.ofMillis(leaseTtl))
+				.errorHandler(new DefaultResponseErrorHandler() {
+					@Override
+					public boolean hasError(ClientHttpResponse response) {
+						return false;
+					}
+				}).build();
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new AccountOwnershipInterceptor(ownership, clusterRestTemplate, forward))
+				.addPathPatterns("/find", "/create", "/deposit", "/withdraw", "/transfer", "/accounts/*/balance");
+	}
+
+}
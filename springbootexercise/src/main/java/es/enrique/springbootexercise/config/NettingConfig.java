@@ -0,0 +1,20 @@
+package es.enrique.springbootexercise.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the periodic flush of the netted transfers when
+ * {@code accounts.netting.enabled} is set. Transfers are then accepted by
+ * {@link es.enrique.springbootexercise.service.impl.TransferNettingServiceImpl}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "accounts.netting.enabled", havingValue = "true")
+public class NettingConfig {
+
+}
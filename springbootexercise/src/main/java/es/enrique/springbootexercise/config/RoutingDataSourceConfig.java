@@ -0,0 +1,90 @@
+package es.enrique.springbootexercise.config;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import es.enrique.springbootexercise.api.ClientSessionInterceptor;
+import es.enrique.springbootexercise.dao.routing.ReadWriteRoutingDataSource;
+import es.enrique.springbootexercise.dao.routing.ReplicaSynchronizer;
+import es.enrique.springbootexercise.dao.routing.ReplicationTracker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Splits the database traffic between a primary and a replica datasource when
+ * {@code accounts.datasource.routing.enabled} is set. The primary uses the
+ * regular {@code spring.datasource} properties and the replica the
+ * {@code accounts.datasource.replica} ones.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "accounts.datasource.routing.enabled", havingValue = "true")
+public class RoutingDataSourceConfig implements WebMvcConfigurer {
+
+	@Bean
+	public ReplicationTracker replicationTracker(MeterRegistry registry) {
+		ReplicationTracker tracker = new ReplicationTracker();
+		Gauge.builder("accounts.replica.lag.writes", tracker, ReplicationTracker::getLagWrites)
+				.description("Committed writes not yet copied to the replica").register(registry);
+		Gauge.builder("accounts.replica.lag.time", tracker, ReplicationTracker::getLagMillis).baseUnit("milliseconds")
+				.description("Age of the oldest write not yet copied to the replica").register(registry);
+		return tracker;
+	}
+
+	/**
+	 * The primary and replica pools are plain objects held by the routing
+	 * datasource rather than beans of their own. Boot runs its datasource
+	 * initializer when any {@link DataSource} bean is initialized, which would
+	 * require this bean while it's still being created.
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(DataSourceProperties properties,
+			@Value("${accounts.datasource.replica.url}") String url,
+			@Value("${accounts.datasource.replica.username}") String username,
+			@Value("${accounts.datasource.replica.password}") String password, ReplicationTracker tracker) {
+		DataSource primary = properties.initializeDataSourceBuilder().build();
+		DataSource replica = DataSourceBuilder.create().driverClassName(properties.determineDriverClassName())
+				.url(url).username(username).password(password).build();
+
+		// The replica starts with the same schema as the primary.
+		DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("data.sql")), replica);
+
+		// Delay picking the connection until the transaction is set up.
+		return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(tracker, primary, replica));
+	}
+
+	@Bean
+	public ReplicaSynchronizer replicaSynchronizer(DataSource dataSource, ReplicationTracker tracker)
+			throws SQLException {
+		ReadWriteRoutingDataSource routing = dataSource.unwrap(ReadWriteRoutingDataSource.class);
+		return new ReplicaSynchronizer(new JdbcTemplate(routing.getPrimary()), new JdbcTemplate(routing.getReplica()),
+				tracker);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new ClientSessionInterceptor());
+	}
+
+}
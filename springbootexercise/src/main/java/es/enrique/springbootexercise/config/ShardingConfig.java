@@ -0,0 +1,32 @@
+package es.enrique.springbootexercise.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import es.enrique.springbootexercise.dao.sharding.AccountShards;
+
+/**
+ * Partitions the accounts across the databases listed in
+ * {@code accounts.sharding.urls} when {@code accounts.sharding.enabled} is set.
+ * The accounts are then managed by
+ * {@link es.enrique.springbootexercise.service.impl.ShardedAccountServiceImpl}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+	@Bean
+	public AccountShards accountShards(@Value("${accounts.sharding.urls}") String[] urls,
+			@Value("${accounts.sharding.username}") String username,
+			@Value("${accounts.sharding.password}") String password) {
+		return AccountShards.create(urls, username, password);
+	}
+
+}
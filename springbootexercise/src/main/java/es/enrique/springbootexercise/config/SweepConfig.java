@@ -0,0 +1,43 @@
+package es.enrique.springbootexercise.config;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import es.enrique.springbootexercise.service.AccountSweepService;
+import es.enrique.springbootexercise.service.SweepConflictException;
+
+/**
+ * Runs the interest and fee sweep at the start of every month when
+ * {@code accounts.sweep.month-end.enabled} is set. The sweep is named after the
+ * month it closes, so a node restarted half way resumes it on the next run.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "accounts.sweep.month-end.enabled", havingValue = "true")
+public class SweepConfig {
+
+	@Autowired
+	private AccountSweepService service;
+
+	@Value("${accounts.sweep.month-end.interest-rate}")
+	private BigDecimal interestRate;
+
+	@Value("${accounts.sweep.month-end.fee}")
+	private BigDecimal fee;
+
+	@Scheduled(cron = "${accounts.sweep.month-end.cron:0 0 0 1 * *}")
+	public void sweepMonthEnd() throws SweepConflictException {
+		service.sweep(YearMonth.now().minusMonths(1).toString(), interestRate, fee);
+	}
+
+}
@@ -0,0 +1,47 @@
+package es.enrique.springbootexercise.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import es.enrique.springbootexercise.api.AccountCommandHandler;
+
+/**
+ * Exposes the {@code /commands} WebSocket channel, where clients pipeline
+ * account commands over a single long-lived connection instead of making an
+ * HTTP request for each of them.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+	@Autowired
+	private AccountCommandHandler commandHandler;
+
+	@Override
+	public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+		registry.addHandler(commandHandler, "/commands");
+	}
+
+	/**
+	 * Scheduler of the {@code @Scheduled} tasks. Declared explicitly, otherwise
+	 * they would be picked up by the SockJS scheduler registered along with the
+	 * WebSocket support, which does nothing when SockJS isn't used.
+	 */
+	@Bean
+	public TaskScheduler taskScheduler() {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(4);
+		scheduler.setThreadNamePrefix("scheduling-");
+		return scheduler;
+	}
+
+}
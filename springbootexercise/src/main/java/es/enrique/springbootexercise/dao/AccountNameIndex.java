@@ -0,0 +1,227 @@
+package es.enrique.springbootexercise.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+import es.enrique.springbootexercise.model.AccountSummary;
+
+/**
+ * In-memory index of the account names, used to find accounts by a
+ * case-insensitive prefix of their name.
+ *
+ * Names are kept lower-cased in a radix tree, where each edge holds the longest
+ * run of characters shared by the names below it. The name of an account is
+ * rebuilt from its path, so only names whose case differs from their key are
+ * stored as well.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Component
+public class AccountNameIndex {
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final Node root = new Node(new char[0]);
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private int size;
+
+	/**
+	 * Adds an account to the index. Adding the same account twice has no effect.
+	 *
+	 * @param id   The id of the account.
+	 * @param name The name of the account.
+	 */
+	public void add(Integer id, String name) {
+		String key = name.toLowerCase(Locale.ROOT);
+		lock.writeLock().lock();
+		try {
+			Node node = root;
+			int i = 0;
+			while (i < key.length()) {
+				int c = node.findChild(key.charAt(i));
+				if (c < 0) {
+					// No name continues this way yet, the rest of the key becomes a leaf.
+					Node leaf = new Node(key.substring(i).toCharArray());
+					node.insertChild(-c - 1, leaf);
+					node = leaf;
+					break;
+				}
+
+				Node child = node.children[c];
+				int common = commonPrefix(child.label, key, i);
+				if (common < child.label.length) {
+					// The key leaves the edge half way, split it.
+					Node split = new Node(Arrays.copyOf(child.label, common));
+					child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+					split.children = new Node[] { child };
+					node.children[c] = split;
+					child = split;
+				}
+				node = child;
+				i += common;
+			}
+
+			if (node.addEntry(id, name, key)) {
+				size++;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the accounts whose name starts with the given prefix, ignoring case.
+	 * The accounts are returned in name order.
+	 *
+	 * @param prefix The start of the names to look for.
+	 * @param limit  The maximum number of accounts to return.
+	 * @return The accounts found.
+	 */
+	public List<AccountSummary> search(String prefix, int limit) {
+		String key = prefix.toLowerCase(Locale.ROOT);
+		List<AccountSummary> found = new ArrayList<>(Math.min(limit, 64));
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			StringBuilder path = new StringBuilder(key.length() + 16);
+			int i = 0;
+			while (i < key.length()) {
+				int c = node.findChild(key.charAt(i));
+				if (c < 0) {
+					return found;
+				}
+				node = node.children[c];
+				int common = commonPrefix(node.label, key, i);
+				if (common < node.label.length && i + common < key.length()) {
+					// The prefix leaves the edge, nothing matches.
+					return found;
+				}
+				path.append(node.label);
+				i += node.label.length;
+			}
+			collect(node, path, found, limit);
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of accounts in the index
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static void collect(Node node, StringBuilder path, List<AccountSummary> found, int limit) {
+		for (int e = 0; e < node.entryCount() && found.size() < limit; e++) {
+			String name = node.names != null && node.names[e] != null ? node.names[e] : path.toString();
+			found.add(new AccountSummary(node.ids[e], name));
+		}
+		for (Node child : node.children) {
+			if (found.size() >= limit) {
+				return;
+			}
+			int length = path.length();
+			path.append(child.label);
+			collect(child, path, found, limit);
+			path.setLength(length);
+		}
+	}
+
+	private static int commonPrefix(char[] label, String key, int offset) {
+		int max = Math.min(label.length, key.length() - offset);
+		int i = 0;
+		while (i < max && label[i] == key.charAt(offset + i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Node of the radix tree. Its children are sorted by the first character of
+	 * their label.
+	 */
+	private static final class Node {
+
+		private char[] label;
+		private Node[] children = NO_CHILDREN;
+		private int[] ids;
+		// Only created when a name differs from its lower-cased key.
+		private String[] names;
+
+		private Node(char[] label) {
+			this.label = label;
+		}
+
+		private int entryCount() {
+			return ids == null ? 0 : ids.length;
+		}
+
+		/**
+		 * Binary search of the child starting with the given character.
+		 *
+		 * @return The index of the child, or (-(insertion point) - 1).
+		 */
+		private int findChild(char first) {
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				char c = children[mid].label[0];
+				if (c < first) {
+					low = mid + 1;
+				} else if (c > first) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		private void insertChild(int index, Node child) {
+			Node[] grown = new Node[children.length + 1];
+			System.arraycopy(children, 0, grown, 0, index);
+			grown[index] = child;
+			System.arraycopy(children, index, grown, index + 1, children.length - index);
+			children = grown;
+		}
+
+		private boolean addEntry(int id, String name, String key) {
+			int count = entryCount();
+			for (int e = 0; e < count; e++) {
+				if (ids[e] == id) {
+					return false;
+				}
+			}
+
+			ids = ids == null ? new int[1] : Arrays.copyOf(ids, count + 1);
+			ids[count] = id;
+			if (names != null) {
+				names = Arrays.copyOf(names, count + 1);
+			}
+			if (!name.equals(key)) {
+				if (names == null) {
+					names = new String[count + 1];
+				}
+				names[count] = name;
+			}
+			return true;
+		}
+
+	}
+
+}
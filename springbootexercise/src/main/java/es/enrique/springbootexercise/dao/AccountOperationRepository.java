@@ -0,0 +1,43 @@
+package es.enrique.springbootexercise.dao;
+
+import java.util.List;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import es.enrique.springbootexercise.model.AccountOperation;
+import es.enrique.springbootexercise.model.AccountOperation.Status;
+
+/**
+ * CrudRepository interface to manipulate {@link AccountOperation} entities on
+ * the database.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface AccountOperationRepository extends CrudRepository<AccountOperation, Long> {
+
+	/**
+	 * Finds the operations with the given status.
+	 *
+	 * @param status The status of the operations.
+	 * @return The operations found, in the order they were accepted.
+	 */
+	List<AccountOperation> findByStatusOrderById(Status status);
+
+	/**
+	 * Finds an operation by its id and locks it until the end of the current
+	 * transaction, so it can't be applied twice at the same time.
+	 *
+	 * @param id The id of the operation.
+	 * @return The operation with the given id if it exists.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select o from AccountOperation o where o.id = :id")
+	AccountOperation findByIdForUpdate(@Param("id") Long id);
+
+}
@@ -0,0 +1,148 @@
+package es.enrique.springbootexercise.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads the accounts changed most recently right after startup, so the first
+ * requests after a restart don't hit a cold file database. Nothing is kept by
+ * the application: the reads only warm the page cache of H2, sized with
+ * {@code CACHE_SIZE}, which may evict the pages again under other load. Both
+ * the rows and the pages of the unique index on the name are read, in batches
+ * spread over several threads.
+ *
+ * Until the preloading is done the health of the application is reported as
+ * OUT_OF_SERVICE, so no traffic is routed to it. A failed preloading is only
+ * reported, as the accounts can still be read from disk.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.preload.enabled", havingValue = "true")
+public class AccountPreloader implements HealthIndicator {
+
+	private static final int BATCH_SIZE = 500;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int hotAccounts;
+	private final int threads;
+
+	private volatile boolean done;
+	private volatile int preloaded;
+	private volatile long elapsedMillis;
+	private volatile String error;
+
+	@Autowired
+	public AccountPreloader(JdbcTemplate jdbcTemplate, @Value("${accounts.preload.hot-accounts:100000}") int hotAccounts,
+			@Value("${accounts.preload.threads:4}") int threads) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.hotAccounts = hotAccounts;
+		this.threads = threads;
+	}
+
+	/**
+	 * Starts preloading in the background once the application is up.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		Thread preloader = new Thread(() -> {
+			try {
+				preload();
+			} catch (RuntimeException e) {
+				error = e.getMessage();
+				done = true;
+			}
+		}, "account-preloader");
+		preloader.setDaemon(true);
+		preloader.start();
+	}
+
+	/**
+	 * Reads the hot accounts into the page cache of H2 and waits until it's done.
+	 *
+	 * @return The number of accounts read.
+	 */
+	public int preload() {
+		long start = System.nanoTime();
+		List<Integer> ids = hotAccountIds();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> batches = new ArrayList<>();
+			for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+				List<Integer> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+				batches.add(executor.submit(() -> readBatch(batch)));
+			}
+			for (Future<?> batch : batches) {
+				batch.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Preloading interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Preloading failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		preloaded = ids.size();
+		elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		done = true;
+		return preloaded;
+	}
+
+	@Override
+	public Health health() {
+		if (!done) {
+			return Health.outOfService().withDetail("preloading", true).build();
+		}
+		Health.Builder health = Health.up().withDetail("accounts", preloaded).withDetail("millis", elapsedMillis);
+		if (error != null) {
+			health.withDetail("error", error);
+		}
+		return health.build();
+	}
+
+	/**
+	 * @return the ids of the accounts with the latest balance changes
+	 */
+	private List<Integer> hotAccountIds() {
+		// Look back a few changes per account, busy accounts change many times.
+		return jdbcTemplate.queryForList(
+				"SELECT DISTINCT account_id FROM (SELECT account_id FROM balance_changes ORDER BY id DESC LIMIT ?) LIMIT ?",
+				Integer.class, hotAccounts * 4, hotAccounts);
+	}
+
+	private void readBatch(List<Integer> ids) {
+		String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+		List<String> names = new ArrayList<>(ids.size());
+		jdbcTemplate.query("SELECT id, name, currency, money, treasury FROM accounts WHERE id IN (" + placeholders + ")",
+				rs -> {
+					names.add(rs.getString("name"));
+				}, ids.toArray());
+
+		// Accounts are looked up by name, read the pages of the database index too.
+		if (!names.isEmpty()) {
+			placeholders = String.join(",", Collections.nCopies(names.size(), "?"));
+			jdbcTemplate.queryForList("SELECT id FROM accounts WHERE name IN (" + placeholders + ")", Integer.class,
+					names.toArray());
+		}
+	}
+
+}
@@ -1,6 +1,14 @@
 package es.enrique.springbootexercise.dao;
 
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import es.enrique.springbootexercise.model.Account;
 
@@ -21,4 +29,26 @@ public interface AccountRepository extends CrudRepository<Account, Integer> {
 	 */
 	Account findByName(String name);
 
+	/**
+	 * Finds an account by its unique name and locks it until the end of the
+	 * current transaction, so concurrent updates of its balance can't be lost.
+	 * 
+	 * @param name The name of the account to search for.
+	 * @return The account with the given name if it exists.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select a from Account a where a.name = :name")
+	Account findByNameForUpdate(@Param("name") String name);
+
+	/**
+	 * Finds the accounts with the given names and locks them until the end of the
+	 * current transaction. The accounts are locked in name order.
+	 * 
+	 * @param names The names of the accounts to search for.
+	 * @return The accounts found, in name order.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select a from Account a where a.name in :names order by a.name")
+	List<Account> findAllByNameForUpdate(@Param("names") Collection<String> names);
+
 }
@@ -0,0 +1,99 @@
+package es.enrique.springbootexercise.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.joda.money.CurrencyUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.enrique.springbootexercise.model.AccountView;
+
+/**
+ * Repository of {@link AccountView}s, read through plain JDBC so no entity is
+ * hydrated and no persistence context is opened.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Repository
+public class AccountViewRepository {
+
+	private static final String SELECT_VIEW = "SELECT id, name, currency, money, treasury FROM accounts WHERE name = ?";
+	private static final String SELECT_VIEWS = "SELECT id, name, currency, money, treasury FROM accounts WHERE name IN (";
+
+	private static final RowMapper<AccountView> VIEW_MAPPER = AccountViewRepository::mapView;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate readOnlyTransactions;
+
+	@Autowired
+	public AccountViewRepository(JdbcTemplate jdbcTemplate,
+			@Value("${accounts.datasource.routing.enabled:false}") boolean routing) {
+		this.jdbcTemplate = jdbcTemplate;
+		if (routing) {
+			// Reads outside a read-only transaction would always go to the primary.
+			readOnlyTransactions = new TransactionTemplate(
+					new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+			readOnlyTransactions.setReadOnly(true);
+		} else {
+			readOnlyTransactions = null;
+		}
+	}
+
+	/**
+	 * Finds an account by its unique name.
+	 *
+	 * @param name The name of the account to search for.
+	 * @return The account with the given name, or null if it doesn't exist.
+	 */
+	public AccountView findByName(String name) {
+		if (readOnlyTransactions == null) {
+			return query(name);
+		}
+		return readOnlyTransactions.execute(status -> query(name));
+	}
+
+	/**
+	 * Finds the accounts with the given names, with one query per chunk of names.
+	 *
+	 * @param names     The names of the accounts to search for.
+	 * @param chunkSize The maximum number of names per query.
+	 * @return The accounts found, in no particular order.
+	 */
+	public List<AccountView> findByNames(Collection<String> names, int chunkSize) {
+		if (readOnlyTransactions == null) {
+			return query(names, chunkSize);
+		}
+		return readOnlyTransactions.execute(status -> query(names, chunkSize));
+	}
+
+	private List<AccountView> query(Collection<String> names, int chunkSize) {
+		List<AccountView> found = new ArrayList<>(names.size());
+		for (List<Object> chunk : InClause.chunks(names, chunkSize)) {
+			found.addAll(jdbcTemplate.query(SELECT_VIEWS + InClause.placeholders(chunk.size()) + ")", VIEW_MAPPER,
+					chunk.toArray()));
+		}
+		return found;
+	}
+
+	private AccountView query(String name) {
+		List<AccountView> found = jdbcTemplate.query(SELECT_VIEW, VIEW_MAPPER, name);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	private static AccountView mapView(ResultSet rs, int rowNum) throws SQLException {
+		// CurrencyUnit.of returns the registered instance, nothing is allocated.
+		return new AccountView(rs.getInt("id"), rs.getString("name"), (Boolean) rs.getObject("treasury"),
+				CurrencyUnit.of(rs.getString("currency")), rs.getDouble("money"));
+	}
+
+}
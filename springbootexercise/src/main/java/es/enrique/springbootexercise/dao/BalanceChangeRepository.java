@@ -0,0 +1,34 @@
+package es.enrique.springbootexercise.dao;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import es.enrique.springbootexercise.model.BalanceChange;
+
+/**
+ * CrudRepository interface to manipulate {@link BalanceChange} entities on the
+ * database.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface BalanceChangeRepository extends CrudRepository<BalanceChange, Long> {
+
+	/**
+	 * Adds up the changes of an account made after a given change and no later
+	 * than the given time.
+	 *
+	 * @param accountId The id of the account.
+	 * @param afterId   Only changes with a greater id are added.
+	 * @param at        Only changes made up to this time are added.
+	 * @return The sum of the changes, null if there are none.
+	 */
+	@Query("select sum(c.amount) from BalanceChange c where c.accountId = :accountId and c.id > :afterId and c.changedAt <= :at")
+	BigDecimal sumChanges(@Param("accountId") Integer accountId, @Param("afterId") Long afterId,
+			@Param("at") Instant at);
+
+}
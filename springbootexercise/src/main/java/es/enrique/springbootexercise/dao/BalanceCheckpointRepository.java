@@ -0,0 +1,37 @@
+package es.enrique.springbootexercise.dao;
+
+import java.time.Instant;
+
+import org.springframework.data.repository.CrudRepository;
+
+import es.enrique.springbootexercise.model.BalanceCheckpoint;
+
+/**
+ * CrudRepository interface to manipulate {@link BalanceCheckpoint} entities on
+ * the database.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface BalanceCheckpointRepository extends CrudRepository<BalanceCheckpoint, Long> {
+
+	/**
+	 * Finds the latest checkpoint of an account taken no later than the given
+	 * time.
+	 *
+	 * @param accountId The id of the account.
+	 * @param at        The time to look back from.
+	 * @return The checkpoint, or null if the account had none by then.
+	 */
+	BalanceCheckpoint findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(Integer accountId,
+			Instant at);
+
+	/**
+	 * Counts the checkpoints of an account.
+	 *
+	 * @param accountId The id of the account.
+	 * @return The number of checkpoints.
+	 */
+	long countByAccountId(Integer accountId);
+
+}
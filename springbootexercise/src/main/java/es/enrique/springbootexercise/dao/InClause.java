@@ -0,0 +1,51 @@
+package es.enrique.springbootexercise.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Builds the value lists of {@code IN} conditions for queries over many keys.
+ *
+ * Lists are split in chunks so a statement never gets too many parameters, and
+ * every chunk is padded to a power of two by repeating its last value. Only a
+ * handful of statement shapes are then ever prepared, and the database reuses
+ * their plans.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public final class InClause {
+
+	private InClause() {
+
+	}
+
+	/**
+	 * @param values The values to look for, duplicates are dropped.
+	 * @param size   The maximum size of a chunk.
+	 * @return the padded chunks of the values
+	 */
+	public static List<List<Object>> chunks(Collection<?> values, int size) {
+		List<Object> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+		List<List<Object>> chunks = new ArrayList<>((distinct.size() + size - 1) / size);
+		for (int from = 0; from < distinct.size(); from += size) {
+			List<Object> chunk = new ArrayList<>(distinct.subList(from, Math.min(from + size, distinct.size())));
+			int padded = Math.min(size, Integer.highestOneBit(chunk.size() - 1) << 1);
+			chunk.addAll(Collections.nCopies(Math.max(0, padded - chunk.size()), chunk.get(chunk.size() - 1)));
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	/**
+	 * @param count The number of values.
+	 * @return the placeholders of that many values, separated by commas
+	 */
+	public static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
+}
@@ -0,0 +1,32 @@
+package es.enrique.springbootexercise.dao;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import es.enrique.springbootexercise.model.ScheduledTransfer;
+
+/**
+ * CrudRepository interface to manipulate {@link ScheduledTransfer} entities on
+ * the database.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface ScheduledTransferRepository extends CrudRepository<ScheduledTransfer, Long> {
+
+	/**
+	 * Finds a scheduled transfer by its id and locks it until the end of the
+	 * current transaction, so the same execution can't run twice.
+	 *
+	 * @param id The id of the scheduled transfer.
+	 * @return The scheduled transfer with the given id if it exists.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select t from ScheduledTransfer t where t.id = :id")
+	ScheduledTransfer findByIdForUpdate(@Param("id") Long id);
+
+}
@@ -0,0 +1,92 @@
+package es.enrique.springbootexercise.dao.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring of the nodes of the cluster. Each node is placed at
+ * several points of the ring, its virtual nodes, and a key belongs to the node
+ * of the first point at or after its hash. When a node joins or leaves only the
+ * keys next to its points move.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public final class HashRing {
+
+	private final Set<String> nodes;
+	private final int[] points;
+	private final String[] owners;
+
+	/**
+	 * @param nodes        The nodes of the cluster.
+	 * @param virtualNodes The number of points of the ring per node.
+	 */
+	public HashRing(Collection<String> nodes, int virtualNodes) {
+		this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+
+		long[] sorted = new long[this.nodes.size() * virtualNodes];
+		String[] byIndex = this.nodes.toArray(new String[0]);
+		int n = 0;
+		for (int node = 0; node < byIndex.length; node++) {
+			for (int v = 0; v < virtualNodes; v++) {
+				// The point in the high bits and the node in the low ones, sorted together.
+				sorted[n++] = ((long) hash(byIndex[node] + "#" + v) << 32) | node;
+			}
+		}
+		Arrays.sort(sorted);
+
+		points = new int[sorted.length];
+		owners = new String[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			points[i] = (int) (sorted[i] >> 32);
+			owners[i] = byIndex[(int) sorted[i]];
+		}
+	}
+
+	/**
+	 * @param key The key to place.
+	 * @return the node the key belongs to, or null if the ring has no nodes
+	 */
+	public String nodeFor(String key) {
+		if (points.length == 0) {
+			return null;
+		}
+		int i = Arrays.binarySearch(points, hash(key));
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return owners[i == points.length ? 0 : i];
+	}
+
+	/**
+	 * @return the nodes of the ring
+	 */
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * FNV-1a over the UTF-8 bytes of the key, with a final avalanche so close
+	 * keys like the virtual nodes of a node land far apart.
+	 *
+	 * @param key The key to hash.
+	 * @return the hash of the key
+	 */
+	public static int hash(String key) {
+		int hash = 0x811C9DC5;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash = (hash ^ (b & 0xFF)) * 0x01000193;
+		}
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -0,0 +1,79 @@
+package es.enrique.springbootexercise.dao.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LeaseCoordinator} keeping the leases in memory. The
+ * {@link #shared() shared} instance coordinates every node started in the same
+ * JVM, which is enough to run a cluster locally or in tests.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class InMemoryLeaseCoordinator implements LeaseCoordinator {
+
+	private static final InMemoryLeaseCoordinator SHARED = new InMemoryLeaseCoordinator();
+
+	private static final class Lease {
+		private final String holder;
+		private final long expiresAt;
+
+		private Lease(String holder, long expiresAt) {
+			this.holder = holder;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isLive(long now) {
+			return expiresAt - now > 0;
+		}
+	}
+
+	private final Map<String, Lease> leases = new HashMap<>();
+
+	/**
+	 * @return the coordinator shared by the whole JVM
+	 */
+	public static InMemoryLeaseCoordinator shared() {
+		return SHARED;
+	}
+
+	@Override
+	public synchronized boolean tryAcquire(String resource, String holder, long ttlMillis) {
+		long now = System.nanoTime();
+		Lease lease = leases.get(resource);
+		if (lease != null && lease.isLive(now) && !lease.holder.equals(holder)) {
+			return false;
+		}
+		leases.put(resource, new Lease(holder, now + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+		return true;
+	}
+
+	@Override
+	public synchronized void release(String resource, String holder) {
+		Lease lease = leases.get(resource);
+		if (lease != null && lease.holder.equals(holder)) {
+			leases.remove(resource);
+		}
+	}
+
+	@Override
+	public synchronized String holder(String resource) {
+		Lease lease = leases.get(resource);
+		return lease != null && lease.isLive(System.nanoTime()) ? lease.holder : null;
+	}
+
+	@Override
+	public synchronized Map<String, String> holders(String prefix) {
+		long now = System.nanoTime();
+		Map<String, String> holders = new HashMap<>();
+		for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+			if (entry.getKey().startsWith(prefix) && entry.getValue().isLive(now)) {
+				holders.put(entry.getKey(), entry.getValue().holder);
+			}
+		}
+		return holders;
+	}
+
+}
@@ -0,0 +1,52 @@
+package es.enrique.springbootexercise.dao.cluster;
+
+import java.util.Map;
+
+/**
+ * Grants time-bound leases on named resources to the nodes of the cluster. At
+ * most one holder has a live lease on a resource at any time, and a lease
+ * that isn't renewed before its time to live expires is free to be taken by
+ * another holder.
+ *
+ * Implementations are expected to be backed by a coordination store shared by
+ * every node, like etcd or ZooKeeper. {@link InMemoryLeaseCoordinator} stands
+ * in for one when every node runs in the same JVM.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface LeaseCoordinator {
+
+	/**
+	 * Takes the lease on the resource, or renews it if the holder already has it.
+	 *
+	 * @param resource   The resource to lease.
+	 * @param holder     The one asking for the lease.
+	 * @param ttlMillis  How long the lease lasts from now unless renewed.
+	 * @return true if the holder has the lease, false if someone else has it
+	 */
+	boolean tryAcquire(String resource, String holder, long ttlMillis);
+
+	/**
+	 * Gives up the lease on the resource, if the holder has it.
+	 *
+	 * @param resource The leased resource.
+	 * @param holder   The one giving up the lease.
+	 */
+	void release(String resource, String holder);
+
+	/**
+	 * @param resource The leased resource.
+	 * @return the holder of the live lease on the resource, or null if nobody has
+	 *         it
+	 */
+	String holder(String resource);
+
+	/**
+	 * @param prefix The start of the names of the resources.
+	 * @return the holder of each live lease on a resource starting with the
+	 *         prefix, by resource
+	 */
+	Map<String, String> holders(String prefix);
+
+}
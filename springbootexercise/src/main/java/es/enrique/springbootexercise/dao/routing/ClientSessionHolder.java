@@ -0,0 +1,57 @@
+package es.enrique.springbootexercise.dao.routing;
+
+/**
+ * Holds the client session bound to the current thread, along with the last
+ * write committed by the thread while serving it. Used to guarantee that a
+ * client always reads its own writes.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public final class ClientSessionHolder {
+
+	private static final ThreadLocal<String> SESSION_ID = new ThreadLocal<>();
+	private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+	private ClientSessionHolder() {
+
+	}
+
+	/**
+	 * Binds the given client session to the current thread.
+	 *
+	 * @param sessionId The id of the client session, may be null.
+	 */
+	public static void begin(String sessionId) {
+		SESSION_ID.set(sessionId);
+		LAST_WRITE.remove();
+	}
+
+	/**
+	 * Unbinds the client session from the current thread.
+	 */
+	public static void clear() {
+		SESSION_ID.remove();
+		LAST_WRITE.remove();
+	}
+
+	/**
+	 * @return the id of the client session bound to the current thread, or null.
+	 */
+	public static String getSessionId() {
+		return SESSION_ID.get();
+	}
+
+	/**
+	 * @return the last write sequence committed by the current thread, or 0.
+	 */
+	public static long getLastWrite() {
+		Long lastWrite = LAST_WRITE.get();
+		return lastWrite == null ? 0 : lastWrite;
+	}
+
+	static void recordWrite(long sequence) {
+		LAST_WRITE.set(sequence);
+	}
+
+}
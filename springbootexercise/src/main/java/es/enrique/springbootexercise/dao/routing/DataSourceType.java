@@ -0,0 +1,21 @@
+package es.enrique.springbootexercise.dao.routing;
+
+/**
+ * Lookup keys of the datasources handled by {@link ReadWriteRoutingDataSource}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public enum DataSourceType {
+
+	/**
+	 * The datasource that receives every write.
+	 */
+	PRIMARY,
+
+	/**
+	 * The datasource that serves read-only transactions.
+	 */
+	REPLICA
+
+}
@@ -0,0 +1,80 @@
+package es.enrique.springbootexercise.dao.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Datasource that sends read-only transactions to the replica and everything
+ * else to the primary.
+ *
+ * Reads go to the primary as well when the replica hasn't caught up with the
+ * writes of the current client session, so a client always reads its own
+ * writes. It must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} so
+ * the read-only flag of the transaction is known when the connection is picked.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	private final ReplicationTracker tracker;
+	private final DataSource primary;
+	private final DataSource replica;
+
+	public ReadWriteRoutingDataSource(ReplicationTracker tracker, DataSource primary, DataSource replica) {
+		this.tracker = tracker;
+		this.primary = primary;
+		this.replica = replica;
+
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(DataSourceType.PRIMARY, primary);
+		targets.put(DataSourceType.REPLICA, replica);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	public DataSource getReplica() {
+		return replica;
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return tracker.isReplicaCaughtUp() ? DataSourceType.REPLICA : DataSourceType.PRIMARY;
+		}
+
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& TransactionSynchronizationManager.isSynchronizationActive()
+				&& !TransactionSynchronizationManager.hasResource(tracker)) {
+			// First connection of a write transaction, track its commit.
+			TransactionSynchronizationManager.bindResource(tracker, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCommit() {
+					tracker.recordCommit();
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(tracker);
+				}
+
+			});
+		}
+		return DataSourceType.PRIMARY;
+	}
+
+}
@@ -0,0 +1,85 @@
+package es.enrique.springbootexercise.dao.routing;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Stand-in for database replication, meant for running locally against two H2
+ * instances. Periodically copies the accounts table and the new balance history
+ * rows from the primary to the replica, and reports the copied writes to the
+ * {@link ReplicationTracker}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class ReplicaSynchronizer {
+
+	private static final String SELECT_ACCOUNTS = "SELECT id, name, currency, money, treasury FROM accounts";
+	private static final String MERGE_ACCOUNT = "MERGE INTO accounts (id, name, currency, money, treasury) KEY (id) VALUES (?, ?, ?, ?, ?)";
+
+	// History rows may commit out of id order, so recent ids are copied again.
+	private static final long HISTORY_LOOKBACK = 1000;
+
+	private final JdbcTemplate primary;
+	private final JdbcTemplate replica;
+	private final ReplicationTracker tracker;
+	private long lastChangeId;
+	private long lastCheckpointId;
+
+	public ReplicaSynchronizer(JdbcTemplate primary, JdbcTemplate replica, ReplicationTracker tracker) {
+		this.primary = primary;
+		this.replica = replica;
+		this.tracker = tracker;
+	}
+
+	/**
+	 * Copies every write committed so far on the primary to the replica.
+	 */
+	@Scheduled(fixedDelayString = "${accounts.datasource.replica.sync-interval:500}")
+	public synchronized void synchronize() {
+		long startedAt = System.currentTimeMillis();
+		// Read the sequence before copying, so the copy holds at least those writes.
+		long sequence = tracker.getCommittedSequence();
+		if (sequence == tracker.getReplicatedSequence()) {
+			return;
+		}
+
+		List<Object[]> rows = primary.query(SELECT_ACCOUNTS, (rs, rowNum) -> new Object[] { rs.getInt("id"),
+				rs.getString("name"), rs.getString("currency"), rs.getBigDecimal("money"), rs.getObject("treasury") });
+		replica.batchUpdate(MERGE_ACCOUNT, rows);
+
+		lastChangeId = copyHistory("balance_changes", "id, account_id, changed_at, amount", lastChangeId);
+		lastCheckpointId = copyHistory("balance_checkpoints", "id, account_id, taken_at, money, change_id",
+				lastCheckpointId);
+
+		tracker.markReplicated(sequence, startedAt);
+	}
+
+	/**
+	 * Copies the rows of an append-only history table added since the last copy.
+	 *
+	 * @return The greatest id copied so far.
+	 */
+	private long copyHistory(String table, String columns, long lastId) {
+		int count = columns.split(",").length;
+		List<Object[]> rows = primary.query("SELECT " + columns + " FROM " + table + " WHERE id > ? ORDER BY id",
+				(rs, rowNum) -> {
+					Object[] row = new Object[count];
+					for (int i = 0; i < count; i++) {
+						row[i] = rs.getObject(i + 1);
+					}
+					return row;
+				}, lastId - HISTORY_LOOKBACK);
+		if (rows.isEmpty()) {
+			return lastId;
+		}
+
+		String placeholders = String.join(", ", Collections.nCopies(count, "?"));
+		replica.batchUpdate("MERGE INTO " + table + " (" + columns + ") KEY (id) VALUES (" + placeholders + ")", rows);
+		return Math.max(lastId, ((Number) rows.get(rows.size() - 1)[0]).longValue());
+	}
+
+}
@@ -0,0 +1,100 @@
+package es.enrique.springbootexercise.dao.routing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the writes committed on the primary datasource and how far the
+ * replica has caught up with them.
+ *
+ * Every committed write transaction gets a sequence number. The sessions that
+ * still have writes pending replication are remembered, so their reads can be
+ * sent to the primary until the replica reaches them.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class ReplicationTracker {
+
+	private final AtomicLong committedSequence = new AtomicLong();
+	private final AtomicLong oldestPendingCommit = new AtomicLong();
+	private volatile long replicatedSequence;
+
+	// Only sessions with unreplicated writes are kept here.
+	private final ConcurrentMap<String, Long> sessionWrites = new ConcurrentHashMap<>();
+
+	/**
+	 * Records a write transaction committed on the primary by the current thread.
+	 *
+	 * @return The sequence number assigned to the write.
+	 */
+	public long recordCommit() {
+		oldestPendingCommit.compareAndSet(0, System.currentTimeMillis());
+		long sequence = committedSequence.incrementAndGet();
+
+		ClientSessionHolder.recordWrite(sequence);
+		String sessionId = ClientSessionHolder.getSessionId();
+		if (sessionId != null) {
+			sessionWrites.merge(sessionId, sequence, Math::max);
+		}
+		return sequence;
+	}
+
+	/**
+	 * Records that the replica holds every write up to the given sequence.
+	 *
+	 * @param sequence  The last sequence copied to the replica.
+	 * @param startedAt The time at which the copy was started.
+	 */
+	public void markReplicated(long sequence, long startedAt) {
+		replicatedSequence = sequence;
+		// Anything committed after the copy started is still pending.
+		oldestPendingCommit.set(committedSequence.get() > sequence ? startedAt : 0);
+		sessionWrites.values().removeIf(write -> write <= sequence);
+	}
+
+	/**
+	 * @return true if the replica holds every write the current thread and client
+	 *         session need to see.
+	 */
+	public boolean isReplicaCaughtUp() {
+		long required = ClientSessionHolder.getLastWrite();
+		String sessionId = ClientSessionHolder.getSessionId();
+		if (sessionId != null) {
+			required = Math.max(required, sessionWrites.getOrDefault(sessionId, 0L));
+		}
+		return required <= replicatedSequence;
+	}
+
+	/**
+	 * @return the sequence of the last write committed on the primary.
+	 */
+	public long getCommittedSequence() {
+		return committedSequence.get();
+	}
+
+	/**
+	 * @return the sequence of the last write copied to the replica.
+	 */
+	public long getReplicatedSequence() {
+		return replicatedSequence;
+	}
+
+	/**
+	 * @return the number of committed writes the replica is missing.
+	 */
+	public long getLagWrites() {
+		return Math.max(0, committedSequence.get() - replicatedSequence);
+	}
+
+	/**
+	 * @return the age in milliseconds of the oldest write the replica is missing,
+	 *         or 0 if it's up to date.
+	 */
+	public long getLagMillis() {
+		long oldest = oldestPendingCommit.get();
+		return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+	}
+
+}
@@ -0,0 +1,248 @@
+package es.enrique.springbootexercise.dao.sharding;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import javax.sql.DataSource;
+
+import org.joda.money.CurrencyUnit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.enrique.springbootexercise.dao.InClause;
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountView;
+
+/**
+ * One of the databases the accounts are partitioned across. Provides the SQL
+ * operations needed by the sharded service and runs them in local transactions
+ * of this shard.
+ *
+ * Account ids are made unique across shards by interleaving the ids generated
+ * by each shard.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountShard {
+
+	public static final String RESERVED = "RESERVED";
+	public static final String COMMITTED = "COMMITTED";
+	public static final String ABORTED = "ABORTED";
+
+	private static final String SELECT_ACCOUNT = "SELECT id, name, currency, money, treasury FROM accounts WHERE name = ?";
+	private static final String SELECT_ACCOUNTS = "SELECT id, name, currency, money, treasury FROM accounts WHERE name IN (";
+
+	private final int index;
+	private final int shardCount;
+	private final JdbcTemplate jdbc;
+	private final TransactionTemplate transactions;
+	private final RowMapper<Account> accountMapper = this::mapAccount;
+	private final RowMapper<AccountView> viewMapper = this::mapView;
+
+	public AccountShard(int index, int shardCount, DataSource dataSource) {
+		this.index = index;
+		this.shardCount = shardCount;
+		this.jdbc = new JdbcTemplate(dataSource);
+		this.transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
+	/**
+	 * @return the index of the shard
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Runs the given callback in a local transaction of this shard.
+	 */
+	public <T> T inTransaction(TransactionCallback<T> callback) {
+		return transactions.execute(callback);
+	}
+
+	/**
+	 * Finds an account by its name.
+	 *
+	 * @return The account or null if it doesn't exist in this shard.
+	 */
+	public Account findByName(String name) {
+		List<Account> found = jdbc.query(SELECT_ACCOUNT, accountMapper, name);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/**
+	 * Finds a read-only view of an account by its name.
+	 *
+	 * @return The account or null if it doesn't exist in this shard.
+	 */
+	public AccountView findViewByName(String name) {
+		List<AccountView> found = jdbc.query(SELECT_ACCOUNT, viewMapper, name);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/**
+	 * Finds read-only views of the accounts with the given names, with one query
+	 * per chunk of names.
+	 *
+	 * @return The accounts found in this shard, in no particular order.
+	 */
+	public List<AccountView> findViewsByNames(Collection<String> names, int chunkSize) {
+		List<AccountView> found = new ArrayList<>(names.size());
+		for (List<Object> chunk : InClause.chunks(names, chunkSize)) {
+			found.addAll(jdbc.query(SELECT_ACCOUNTS + InClause.placeholders(chunk.size()) + ")", viewMapper,
+					chunk.toArray()));
+		}
+		return found;
+	}
+
+	/**
+	 * Finds an account by its name, locking its row until the end of the current
+	 * transaction.
+	 *
+	 * @return The account or null if it doesn't exist in this shard.
+	 */
+	public Account findByNameForUpdate(String name) {
+		List<Account> found = jdbc.query(SELECT_ACCOUNT + " FOR UPDATE", accountMapper, name);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/**
+	 * Inserts a new account with a balance of 0.
+	 *
+	 * @return The id of the new account.
+	 * @throws org.springframework.dao.DuplicateKeyException If the name is already
+	 *                                                       in use.
+	 */
+	public Integer insert(String name, String currency, Boolean treasury) {
+		KeyHolder keys = new GeneratedKeyHolder();
+		jdbc.update(con -> {
+			PreparedStatement ps = con.prepareStatement(
+					"INSERT INTO accounts (name, currency, money, treasury) VALUES (?, ?, 0, ?)",
+					Statement.RETURN_GENERATED_KEYS);
+			ps.setString(1, name);
+			ps.setString(2, currency);
+			ps.setObject(3, treasury);
+			return ps;
+		}, keys);
+		return globalId(keys.getKey().intValue());
+	}
+
+	/**
+	 * Passes the id and name of every account of this shard to the given consumer.
+	 */
+	public void forEachName(BiConsumer<Integer, String> consumer) {
+		jdbc.query("SELECT id, name FROM accounts", rs -> {
+			consumer.accept(globalId(rs.getInt("id")), rs.getString("name"));
+		});
+	}
+
+	/**
+	 * Adds the given amount, which may be negative, to the balance of an account.
+	 *
+	 * @return true if the account exists.
+	 */
+	public boolean addMoney(String name, BigDecimal amount) {
+		return jdbc.update("UPDATE accounts SET money = money + ? WHERE name = ?", amount, name) > 0;
+	}
+
+	/**
+	 * Records money taken from an account of this shard for a transfer to another
+	 * shard.
+	 */
+	public void insertReservation(String transferId, String accountFrom, String accountTo, BigDecimal amount) {
+		jdbc.update(
+				"INSERT INTO transfer_reservations (id, account_from, account_to, money, status, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+				transferId, accountFrom, accountTo, amount, RESERVED, new Timestamp(System.currentTimeMillis()));
+	}
+
+	/**
+	 * Moves a reservation out of the {@link #RESERVED} status.
+	 *
+	 * @return true if the reservation was still reserved.
+	 */
+	public boolean resolveReservation(String transferId, String status) {
+		return jdbc.update("UPDATE transfer_reservations SET status = ? WHERE id = ? AND status = ?", status,
+				transferId, RESERVED) > 0;
+	}
+
+	/**
+	 * Finds the reservations still pending that were made before the given time.
+	 */
+	public List<TransferReservation> findReservedBefore(Timestamp before) {
+		return jdbc.query(
+				"SELECT id, account_from, account_to, money FROM transfer_reservations WHERE status = ? AND created_at < ?",
+				(rs, rowNum) -> new TransferReservation(rs.getString("id"), rs.getString("account_from"),
+						rs.getString("account_to"), rs.getBigDecimal("money")),
+				RESERVED, before);
+	}
+
+	/**
+	 * @return the total amount reserved by pending transfers of this shard.
+	 */
+	public BigDecimal sumReserved() {
+		BigDecimal sum = jdbc.queryForObject("SELECT SUM(money) FROM transfer_reservations WHERE status = ?",
+				BigDecimal.class, RESERVED);
+		return sum == null ? BigDecimal.ZERO : sum;
+	}
+
+	/**
+	 * @return the total balance of the accounts of this shard.
+	 */
+	public BigDecimal sumMoney() {
+		BigDecimal sum = jdbc.queryForObject("SELECT SUM(money) FROM accounts", BigDecimal.class);
+		return sum == null ? BigDecimal.ZERO : sum;
+	}
+
+	/**
+	 * @return true if the given transfer was already credited in this shard.
+	 */
+	public boolean hasReceipt(String transferId) {
+		return jdbc.queryForObject("SELECT COUNT(*) FROM transfer_receipts WHERE id = ?", Integer.class,
+				transferId) > 0;
+	}
+
+	/**
+	 * Records that the given transfer was credited in this shard.
+	 *
+	 * @throws org.springframework.dao.DuplicateKeyException If it was already
+	 *                                                       recorded.
+	 */
+	public void insertReceipt(String transferId, String accountTo, BigDecimal amount) {
+		jdbc.update("INSERT INTO transfer_receipts (id, account_to, money) VALUES (?, ?, ?)", transferId, accountTo,
+				amount);
+	}
+
+	private Account mapAccount(ResultSet rs, int rowNum) throws SQLException {
+		Account account = new Account();
+		account.setId(globalId(rs.getInt("id")));
+		account.setName(rs.getString("name"));
+		account.setCurrencyString(rs.getString("currency"));
+		account.setMoneyDouble(rs.getBigDecimal("money").doubleValue());
+		account.setTreasury((Boolean) rs.getObject("treasury"));
+		return account;
+	}
+
+	private AccountView mapView(ResultSet rs, int rowNum) throws SQLException {
+		return new AccountView(globalId(rs.getInt("id")), rs.getString("name"), (Boolean) rs.getObject("treasury"),
+				CurrencyUnit.of(rs.getString("currency")), rs.getDouble("money"));
+	}
+
+	private int globalId(int localId) {
+		return localId * shardCount + index;
+	}
+
+}
@@ -0,0 +1,84 @@
+package es.enrique.springbootexercise.dao.sharding;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * The set of databases the accounts are partitioned across. Each account lives
+ * in the shard picked by the hash of its name.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountShards {
+
+	private final List<AccountShard> shards;
+
+	public AccountShards(List<DataSource> dataSources) {
+		List<AccountShard> shards = new ArrayList<>(dataSources.size());
+		for (int i = 0; i < dataSources.size(); i++) {
+			shards.add(new AccountShard(i, dataSources.size(), dataSources.get(i)));
+		}
+		this.shards = Collections.unmodifiableList(shards);
+	}
+
+	/**
+	 * Connects to the databases with the given urls and creates the sharding
+	 * schema on each of them.
+	 *
+	 * @param urls     The JDBC urls of the shards, in shard order.
+	 * @param username The username for every shard.
+	 * @param password The password for every shard.
+	 * @return The shards.
+	 */
+	public static AccountShards create(String[] urls, String username, String password) {
+		List<DataSource> dataSources = new ArrayList<>(urls.length);
+		for (String url : urls) {
+			DataSource dataSource = DataSourceBuilder.create().url(url.trim()).username(username).password(password)
+					.build();
+			DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("shard-schema.sql")),
+					dataSource);
+			dataSources.add(dataSource);
+		}
+		return new AccountShards(dataSources);
+	}
+
+	/**
+	 * @return the shard holding the account with the given name
+	 */
+	public AccountShard shardFor(String name) {
+		// Spread the bits of the String hash, its low bits are poorly distributed.
+		int hash = name.hashCode() * 0x9E3779B9;
+		return shards.get(Math.floorMod(hash ^ (hash >>> 16), shards.size()));
+	}
+
+	/**
+	 * @return every shard, in shard order
+	 */
+	public List<AccountShard> getShards() {
+		return shards;
+	}
+
+	/**
+	 * @return the money held by every account plus the money reserved by pending
+	 *         cross-shard transfers. Transfers don't change it once none of them
+	 *         is in progress.
+	 */
+	public BigDecimal totalMoney() {
+		BigDecimal total = BigDecimal.ZERO;
+		for (AccountShard shard : shards) {
+			total = total.add(shard.sumMoney()).add(shard.sumReserved());
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,54 @@
+package es.enrique.springbootexercise.dao.sharding;
+
+import java.math.BigDecimal;
+
+/**
+ * Money taken from an account for a transfer to an account of another shard,
+ * which hasn't been credited or given back yet.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class TransferReservation {
+
+	private final String id;
+	private final String accountFrom;
+	private final String accountTo;
+	private final BigDecimal money;
+
+	public TransferReservation(String id, String accountFrom, String accountTo, BigDecimal money) {
+		this.id = id;
+		this.accountFrom = accountFrom;
+		this.accountTo = accountTo;
+		this.money = money;
+	}
+
+	/**
+	 * @return the id of the transfer
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the name of the account the money was taken from
+	 */
+	public String getAccountFrom() {
+		return accountFrom;
+	}
+
+	/**
+	 * @return the name of the account receiving the money
+	 */
+	public String getAccountTo() {
+		return accountTo;
+	}
+
+	/**
+	 * @return the amount of money reserved
+	 */
+	public BigDecimal getMoney() {
+		return money;
+	}
+
+}
@@ -0,0 +1,120 @@
+package es.enrique.springbootexercise.dao.statistics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * {@link DataSource} that records every statement executed through its
+ * connections in the {@link SqlStatistics} of the executing thread.
+ *
+ * Rows are the update counts of writes and the rows read from the result sets
+ * of queries. Time is measured around the execute call only, fetching the rows
+ * afterwards isn't included.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+	public CountingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return countConnection(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return countConnection(super.getConnection(username, password));
+	}
+
+	private static Connection countConnection(Connection target) {
+		return proxy(Connection.class, (proxy, method, args) -> {
+			Object result = invoke(target, method, args);
+			switch (method.getName()) {
+			case "createStatement":
+				return countStatement(Statement.class, (Statement) result);
+			case "prepareStatement":
+				return countStatement(PreparedStatement.class, (PreparedStatement) result);
+			case "prepareCall":
+				return countStatement(CallableStatement.class, (CallableStatement) result);
+			default:
+				return result;
+			}
+		});
+	}
+
+	private static <T extends Statement> T countStatement(Class<T> type, T target) {
+		return proxy(type, (proxy, method, args) -> {
+			if (!method.getName().startsWith("execute")) {
+				Object result = invoke(target, method, args);
+				return "getResultSet".equals(method.getName()) && result != null ? countRows((ResultSet) result)
+						: result;
+			}
+
+			SqlStatistics statistics = SqlStatistics.current();
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = invoke(target, method, args);
+			} finally {
+				statistics.recordStatement(System.nanoTime() - start);
+			}
+
+			if (result instanceof ResultSet) {
+				return countRows((ResultSet) result);
+			} else if (result instanceof Number) {
+				statistics.recordRows(Math.max(0, ((Number) result).longValue()));
+			} else if (result instanceof int[]) {
+				for (int count : (int[]) result) {
+					statistics.recordRows(Math.max(0, count));
+				}
+			} else if (result instanceof long[]) {
+				for (long count : (long[]) result) {
+					statistics.recordRows(Math.max(0, count));
+				}
+			} else if (Boolean.FALSE.equals(result)) {
+				statistics.recordRows(Math.max(0, target.getUpdateCount()));
+			}
+			return result;
+		});
+	}
+
+	private static ResultSet countRows(ResultSet target) {
+		return proxy(ResultSet.class, (proxy, method, args) -> {
+			Object result = invoke(target, method, args);
+			if (Boolean.TRUE.equals(result) && "next".equals(method.getName())) {
+				SqlStatistics.current().recordRows(1);
+			}
+			return result;
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+}
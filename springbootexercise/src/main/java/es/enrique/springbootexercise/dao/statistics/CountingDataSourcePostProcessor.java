@@ -0,0 +1,31 @@
+package es.enrique.springbootexercise.dao.statistics;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the application {@link DataSource} in a {@link CountingDataSource}.
+ *
+ * Only the bean named dataSource is wrapped. With routing enabled the primary
+ * and replica pools sit behind it, and wrapping them too would count every
+ * statement twice.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.sql.statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class CountingDataSourcePostProcessor implements BeanPostProcessor {
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if ("dataSource".equals(beanName) && bean instanceof DataSource && !(bean instanceof CountingDataSource)) {
+			return new CountingDataSource((DataSource) bean);
+		}
+		return bean;
+	}
+
+}
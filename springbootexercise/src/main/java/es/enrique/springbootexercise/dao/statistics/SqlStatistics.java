@@ -0,0 +1,92 @@
+package es.enrique.springbootexercise.dao.statistics;
+
+/**
+ * JDBC statements executed by a thread, with the rows they returned or
+ * updated and the time spent executing them.
+ *
+ * The counters of the current thread only grow. The statistics of a piece of
+ * work are the difference between a snapshot taken before it and the counters
+ * after it, so nested measurements don't interfere.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public final class SqlStatistics {
+
+	private static final ThreadLocal<SqlStatistics> CURRENT = ThreadLocal.withInitial(SqlStatistics::new);
+
+	private long statements;
+	private long rows;
+	private long nanos;
+
+	private SqlStatistics() {
+
+	}
+
+	private SqlStatistics(long statements, long rows, long nanos) {
+		this.statements = statements;
+		this.rows = rows;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return the counters of the current thread
+	 */
+	public static SqlStatistics current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return a copy of these statistics that won't change
+	 */
+	public SqlStatistics snapshot() {
+		return new SqlStatistics(statements, rows, nanos);
+	}
+
+	/**
+	 * @param start A snapshot taken earlier.
+	 * @return the statistics accumulated since the snapshot
+	 */
+	public SqlStatistics since(SqlStatistics start) {
+		return new SqlStatistics(statements - start.statements, rows - start.rows, nanos - start.nanos);
+	}
+
+	/**
+	 * @param other Statistics of another piece of work.
+	 * @return the statistics of both pieces of work
+	 */
+	public SqlStatistics plus(SqlStatistics other) {
+		return new SqlStatistics(statements + other.statements, rows + other.rows, nanos + other.nanos);
+	}
+
+	void recordStatement(long elapsedNanos) {
+		statements++;
+		nanos += elapsedNanos;
+	}
+
+	void recordRows(long count) {
+		rows += count;
+	}
+
+	/**
+	 * @return the number of statements executed
+	 */
+	public long getStatements() {
+		return statements;
+	}
+
+	/**
+	 * @return the number of rows returned or updated
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the time spent executing statements, in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+}
@@ -1,5 +1,7 @@
 package es.enrique.springbootexercise.model;
 
+import java.math.BigDecimal;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -11,6 +13,8 @@ import javax.persistence.Transient;
 import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Java bean that represents and account in the system. It's associated to a
  * unique name and holds an amount of money in a given currency. The treasury
@@ -29,6 +33,7 @@ public class Account {
 	private Boolean treasury;
 	private String currencyString;
 	private Double moneyDouble;
+	private Integer historyChanges;
 
 	// Complex types
 	private CurrencyUnit currency;
@@ -99,7 +104,8 @@ public class Account {
 	 */
 	public void setMoneyDouble(Double moneyDouble) {
 		this.moneyDouble = moneyDouble;
-		this.money = Money.of(currency, moneyDouble);
+		// Whole amounts read as 1000.0, which currencies without decimals reject.
+		this.money = Money.of(currency, BigDecimal.valueOf(moneyDouble).stripTrailingZeros());
 	}
 
 	/**
@@ -149,4 +155,20 @@ public class Account {
 		this.treasury = treasury;
 	}
 
+	/**
+	 * @return the number of balance changes since the last balance checkpoint
+	 */
+	@JsonIgnore
+	@Column(name = "history_changes", nullable = false)
+	public Integer getHistoryChanges() {
+		return historyChanges == null ? 0 : historyChanges;
+	}
+
+	/**
+	 * @param historyChanges the historyChanges to set
+	 */
+	public void setHistoryChanges(Integer historyChanges) {
+		this.historyChanges = historyChanges;
+	}
+
 }
@@ -0,0 +1,54 @@
+package es.enrique.springbootexercise.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Java bean that represents the balance an account had at a given time.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountBalance {
+
+	private final String name;
+	private final String currency;
+	private final BigDecimal money;
+	private final Instant at;
+
+	public AccountBalance(String name, String currency, BigDecimal money, Instant at) {
+		this.name = name;
+		this.currency = currency;
+		this.money = money;
+		this.at = at;
+	}
+
+	/**
+	 * @return the name of the account
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the currency of the account
+	 */
+	public String getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * @return the balance of the account at the given time
+	 */
+	public BigDecimal getMoney() {
+		return money;
+	}
+
+	/**
+	 * @return the time of the balance
+	 */
+	public Instant getAt() {
+		return at;
+	}
+
+}
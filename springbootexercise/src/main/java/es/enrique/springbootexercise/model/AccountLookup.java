@@ -0,0 +1,36 @@
+package es.enrique.springbootexercise.model;
+
+import java.util.List;
+
+/**
+ * Java bean with the result of looking up several accounts by name at once.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountLookup {
+
+	private final List<AccountView> accounts;
+	private final List<String> missing;
+
+	public AccountLookup(List<AccountView> accounts, List<String> missing) {
+		this.accounts = accounts;
+		this.missing = missing;
+	}
+
+	/**
+	 * @return the accounts found, in the order their names were given
+	 */
+	public List<AccountView> getAccounts() {
+		return accounts;
+	}
+
+	/**
+	 * @return the names not associated to any account, in the order they were
+	 *         given
+	 */
+	public List<String> getMissing() {
+		return missing;
+	}
+
+}
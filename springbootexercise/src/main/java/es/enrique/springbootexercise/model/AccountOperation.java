@@ -0,0 +1,202 @@
+package es.enrique.springbootexercise.model;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Java bean that represents a deposit, withdrawal or transfer accepted to be
+ * applied asynchronously, along with its outcome.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Entity
+@Table(name = "account_operations")
+public class AccountOperation {
+
+	public enum Type {
+		DEPOSIT, WITHDRAW, TRANSFER
+	}
+
+	public enum Status {
+		/** Accepted and waiting to be applied. */
+		PENDING,
+		/** Applied to the accounts. */
+		DONE,
+		/** Not applied, the error tells why. */
+		FAILED
+	}
+
+	private Long id;
+	private Type type;
+	private String accountFrom;
+	private String accountTo;
+	private Double money;
+	private Status status;
+	private String error;
+	private Instant acceptedAt;
+	private Instant appliedAt;
+
+	// Empty constructor required by JPA
+	public AccountOperation() {
+
+	}
+
+	public AccountOperation(Type type, String accountFrom, String accountTo, Double money) {
+		this.type = type;
+		this.accountFrom = accountFrom;
+		this.accountTo = accountTo;
+		this.money = money;
+		this.status = Status.PENDING;
+		this.acceptedAt = Instant.now();
+	}
+
+	/**
+	 * @return the id
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	public Long getId() {
+		return id;
+	}
+
+	/**
+	 * @param id the id to set
+	 */
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the type
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "type", nullable = false)
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @param type the type to set
+	 */
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	/**
+	 * @return the name of the account deposited to, withdrawn from or the money is
+	 *         sent from
+	 */
+	@Column(name = "account_from", nullable = false)
+	public String getAccountFrom() {
+		return accountFrom;
+	}
+
+	/**
+	 * @param accountFrom the accountFrom to set
+	 */
+	public void setAccountFrom(String accountFrom) {
+		this.accountFrom = accountFrom;
+	}
+
+	/**
+	 * @return the name of the account that receives the money, null unless it's a
+	 *         transfer
+	 */
+	@Column(name = "account_to")
+	public String getAccountTo() {
+		return accountTo;
+	}
+
+	/**
+	 * @param accountTo the accountTo to set
+	 */
+	public void setAccountTo(String accountTo) {
+		this.accountTo = accountTo;
+	}
+
+	/**
+	 * @return the money
+	 */
+	@Column(name = "money", nullable = false)
+	public Double getMoney() {
+		return money;
+	}
+
+	/**
+	 * @param money the money to set
+	 */
+	public void setMoney(Double money) {
+		this.money = money;
+	}
+
+	/**
+	 * @return the status
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false)
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @param status the status to set
+	 */
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * @return the reason the operation failed, null if it didn't
+	 */
+	@Column(name = "error")
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @param error the error to set
+	 */
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	/**
+	 * @return the time the operation was accepted
+	 */
+	@Column(name = "accepted_at", nullable = false)
+	public Instant getAcceptedAt() {
+		return acceptedAt;
+	}
+
+	/**
+	 * @param acceptedAt the acceptedAt to set
+	 */
+	public void setAcceptedAt(Instant acceptedAt) {
+		this.acceptedAt = acceptedAt;
+	}
+
+	/**
+	 * @return the time the operation was applied or failed, null while pending
+	 */
+	@Column(name = "applied_at")
+	public Instant getAppliedAt() {
+		return appliedAt;
+	}
+
+	/**
+	 * @param appliedAt the appliedAt to set
+	 */
+	public void setAppliedAt(Instant appliedAt) {
+		this.appliedAt = appliedAt;
+	}
+
+}
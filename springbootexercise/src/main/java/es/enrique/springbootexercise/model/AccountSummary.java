@@ -0,0 +1,33 @@
+package es.enrique.springbootexercise.model;
+
+/**
+ * Java bean that identifies an account by its id and name, without its balance.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountSummary {
+
+	private final Integer id;
+	private final String name;
+
+	public AccountSummary(Integer id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	/**
+	 * @return the id
+	 */
+	public Integer getId() {
+		return id;
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+}
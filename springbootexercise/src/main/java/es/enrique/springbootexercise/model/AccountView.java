@@ -0,0 +1,96 @@
+package es.enrique.springbootexercise.model;
+
+import java.math.BigDecimal;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Read-only projection of an {@link Account}, mapped straight from a row
+ * without going through the persistence context. Serializes to the same JSON
+ * as the entity.
+ *
+ * The currency is the shared {@link CurrencyUnit} instance of its code, and the
+ * {@link Money} is only created if asked for.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@JsonPropertyOrder({ "id", "name", "treasury", "currencyString", "moneyDouble", "currency", "money" })
+public class AccountView {
+
+	private final Integer id;
+	private final String name;
+	private final Boolean treasury;
+	private final CurrencyUnit currency;
+	private final double moneyDouble;
+
+	// Created on first use, racing threads create equal instances.
+	private Money money;
+
+	public AccountView(Integer id, String name, Boolean treasury, CurrencyUnit currency, double moneyDouble) {
+		this.id = id;
+		this.name = name;
+		this.treasury = treasury;
+		this.currency = currency;
+		this.moneyDouble = moneyDouble;
+	}
+
+	/**
+	 * @return the id
+	 */
+	public Integer getId() {
+		return id;
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the treasury
+	 */
+	public Boolean getTreasury() {
+		return treasury;
+	}
+
+	/**
+	 * @return the currencyString
+	 */
+	public String getCurrencyString() {
+		return currency.getCode();
+	}
+
+	/**
+	 * @return the moneyDouble
+	 */
+	public Double getMoneyDouble() {
+		return moneyDouble;
+	}
+
+	/**
+	 * @return the currency
+	 */
+	public CurrencyUnit getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * @return the money
+	 */
+	public Money getMoney() {
+		Money result = money;
+		if (result == null) {
+			// Whole amounts read as 1000.0, which currencies without decimals reject.
+			result = Money.of(currency, BigDecimal.valueOf(moneyDouble).stripTrailingZeros());
+			money = result;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,101 @@
+package es.enrique.springbootexercise.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Java bean that represents a change of the balance of an account: the amount
+ * added to it, negative for withdrawals, and when it happened.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Entity
+@Table(name = "balance_changes")
+public class BalanceChange {
+
+	private Long id;
+	private Integer accountId;
+	private Instant changedAt;
+	private BigDecimal amount;
+
+	// Empty constructor required by JPA
+	public BalanceChange() {
+
+	}
+
+	public BalanceChange(Integer accountId, Instant changedAt, BigDecimal amount) {
+		this.accountId = accountId;
+		this.changedAt = changedAt;
+		this.amount = amount;
+	}
+
+	/**
+	 * @return the id
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	public Long getId() {
+		return id;
+	}
+
+	/**
+	 * @param id the id to set
+	 */
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the accountId
+	 */
+	@Column(name = "account_id", nullable = false)
+	public Integer getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * @param accountId the accountId to set
+	 */
+	public void setAccountId(Integer accountId) {
+		this.accountId = accountId;
+	}
+
+	/**
+	 * @return the changedAt
+	 */
+	@Column(name = "changed_at", nullable = false)
+	public Instant getChangedAt() {
+		return changedAt;
+	}
+
+	/**
+	 * @param changedAt the changedAt to set
+	 */
+	public void setChangedAt(Instant changedAt) {
+		this.changedAt = changedAt;
+	}
+
+	/**
+	 * @return the amount
+	 */
+	@Column(name = "amount", nullable = false)
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	/**
+	 * @param amount the amount to set
+	 */
+	public void setAmount(BigDecimal amount) {
+		this.amount = amount;
+	}
+
+}
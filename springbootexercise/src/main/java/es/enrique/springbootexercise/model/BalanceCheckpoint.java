@@ -0,0 +1,119 @@
+package es.enrique.springbootexercise.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Java bean that represents the balance of an account right after one of its
+ * {@link BalanceChange}s. Checkpoints are taken every few changes so a past
+ * balance can be rebuilt by replaying only the changes since the nearest one.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Entity
+@Table(name = "balance_checkpoints")
+public class BalanceCheckpoint {
+
+	private Long id;
+	private Integer accountId;
+	private Instant takenAt;
+	private BigDecimal money;
+	private Long changeId;
+
+	// Empty constructor required by JPA
+	public BalanceCheckpoint() {
+
+	}
+
+	public BalanceCheckpoint(Integer accountId, Instant takenAt, BigDecimal money, Long changeId) {
+		this.accountId = accountId;
+		this.takenAt = takenAt;
+		this.money = money;
+		this.changeId = changeId;
+	}
+
+	/**
+	 * @return the id
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	public Long getId() {
+		return id;
+	}
+
+	/**
+	 * @param id the id to set
+	 */
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the accountId
+	 */
+	@Column(name = "account_id", nullable = false)
+	public Integer getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * @param accountId the accountId to set
+	 */
+	public void setAccountId(Integer accountId) {
+		this.accountId = accountId;
+	}
+
+	/**
+	 * @return the takenAt
+	 */
+	@Column(name = "taken_at", nullable = false)
+	public Instant getTakenAt() {
+		return takenAt;
+	}
+
+	/**
+	 * @param takenAt the takenAt to set
+	 */
+	public void setTakenAt(Instant takenAt) {
+		this.takenAt = takenAt;
+	}
+
+	/**
+	 * @return the money
+	 */
+	@Column(name = "money", nullable = false)
+	public BigDecimal getMoney() {
+		return money;
+	}
+
+	/**
+	 * @param money the money to set
+	 */
+	public void setMoney(BigDecimal money) {
+		this.money = money;
+	}
+
+	/**
+	 * @return the id of the last change included in the balance, 0 if none
+	 */
+	@Column(name = "change_id", nullable = false)
+	public Long getChangeId() {
+		return changeId;
+	}
+
+	/**
+	 * @param changeId the changeId to set
+	 */
+	public void setChangeId(Long changeId) {
+		this.changeId = changeId;
+	}
+
+}
@@ -0,0 +1,197 @@
+package es.enrique.springbootexercise.model;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Java bean that represents a transfer to be executed at a given time, once or
+ * repeatedly every few seconds as a standing order.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Entity
+@Table(name = "scheduled_transfers")
+public class ScheduledTransfer {
+
+	public enum Status {
+		/** Waiting for its next execution. */
+		PENDING,
+		/** A one-off transfer that was executed. */
+		DONE,
+		/** A one-off transfer that couldn't be executed. */
+		FAILED
+	}
+
+	private Long id;
+	private String accountFrom;
+	private String accountTo;
+	private Double money;
+	private Instant executeAt;
+	private Long repeatSeconds;
+	private Status status;
+	private Integer executions;
+	private String lastError;
+
+	// Empty constructor required by JPA
+	public ScheduledTransfer() {
+
+	}
+
+	public ScheduledTransfer(String accountFrom, String accountTo, Double money, Instant executeAt,
+			Long repeatSeconds) {
+		this.accountFrom = accountFrom;
+		this.accountTo = accountTo;
+		this.money = money;
+		this.executeAt = executeAt;
+		this.repeatSeconds = repeatSeconds;
+		this.status = Status.PENDING;
+		this.executions = 0;
+	}
+
+	/**
+	 * @return the id
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	public Long getId() {
+		return id;
+	}
+
+	/**
+	 * @param id the id to set
+	 */
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the name of the account the money is sent from
+	 */
+	@Column(name = "account_from", nullable = false)
+	public String getAccountFrom() {
+		return accountFrom;
+	}
+
+	/**
+	 * @param accountFrom the accountFrom to set
+	 */
+	public void setAccountFrom(String accountFrom) {
+		this.accountFrom = accountFrom;
+	}
+
+	/**
+	 * @return the name of the account that receives the money
+	 */
+	@Column(name = "account_to", nullable = false)
+	public String getAccountTo() {
+		return accountTo;
+	}
+
+	/**
+	 * @param accountTo the accountTo to set
+	 */
+	public void setAccountTo(String accountTo) {
+		this.accountTo = accountTo;
+	}
+
+	/**
+	 * @return the money
+	 */
+	@Column(name = "money", nullable = false)
+	public Double getMoney() {
+		return money;
+	}
+
+	/**
+	 * @param money the money to set
+	 */
+	public void setMoney(Double money) {
+		this.money = money;
+	}
+
+	/**
+	 * @return the time of the next execution
+	 */
+	@Column(name = "execute_at", nullable = false)
+	public Instant getExecuteAt() {
+		return executeAt;
+	}
+
+	/**
+	 * @param executeAt the executeAt to set
+	 */
+	public void setExecuteAt(Instant executeAt) {
+		this.executeAt = executeAt;
+	}
+
+	/**
+	 * @return the seconds between executions, null for one-off transfers
+	 */
+	@Column(name = "repeat_seconds")
+	public Long getRepeatSeconds() {
+		return repeatSeconds;
+	}
+
+	/**
+	 * @param repeatSeconds the repeatSeconds to set
+	 */
+	public void setRepeatSeconds(Long repeatSeconds) {
+		this.repeatSeconds = repeatSeconds;
+	}
+
+	/**
+	 * @return the status
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false)
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @param status the status to set
+	 */
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * @return the number of times the transfer was executed, successfully or not
+	 */
+	@Column(name = "executions", nullable = false)
+	public Integer getExecutions() {
+		return executions;
+	}
+
+	/**
+	 * @param executions the executions to set
+	 */
+	public void setExecutions(Integer executions) {
+		this.executions = executions;
+	}
+
+	/**
+	 * @return the reason the last execution failed, null if it succeeded
+	 */
+	@Column(name = "last_error")
+	public String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @param lastError the lastError to set
+	 */
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+}
@@ -0,0 +1,68 @@
+package es.enrique.springbootexercise.model;
+
+/**
+ * Java bean that reports what a run of an interest and fee sweep did. It is
+ * also published as an application event once the sweep is done.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class SweepReport {
+
+	private final String sweepId;
+	private final long accounts;
+	private final long chunks;
+	private final long skippedChunks;
+	private final long millis;
+
+	public SweepReport(String sweepId, long accounts, long chunks, long skippedChunks, long millis) {
+		this.sweepId = sweepId;
+		this.accounts = accounts;
+		this.chunks = chunks;
+		this.skippedChunks = skippedChunks;
+		this.millis = millis;
+	}
+
+	/**
+	 * @return the id of the sweep
+	 */
+	public String getSweepId() {
+		return sweepId;
+	}
+
+	/**
+	 * @return the number of accounts whose balance was changed by this run
+	 */
+	public long getAccounts() {
+		return accounts;
+	}
+
+	/**
+	 * @return the number of chunks processed by this run
+	 */
+	public long getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * @return the number of chunks skipped because an earlier run did them
+	 */
+	public long getSkippedChunks() {
+		return skippedChunks;
+	}
+
+	/**
+	 * @return the duration of the run, in milliseconds
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * @return the accounts changed per second
+	 */
+	public double getAccountsPerSecond() {
+		return millis > 0 ? accounts * 1000.0 / millis : 0;
+	}
+
+}
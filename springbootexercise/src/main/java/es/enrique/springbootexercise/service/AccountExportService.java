@@ -0,0 +1,52 @@
+package es.enrique.springbootexercise.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Service layer interface for exporting statements and dumps of the accounts
+ * as CSV. Rows are streamed from the database as they are written, so the
+ * memory used doesn't depend on the size of the export.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface AccountExportService {
+
+	/**
+	 * Writes the statement of an account: every change of its balance in the
+	 * given period, with the balance after it. Nothing is written if the account
+	 * doesn't exist.
+	 *
+	 * @param name The name of the account.
+	 * @param from The start of the period, exclusive. Null to start when the
+	 *             account was created.
+	 * @param to   The end of the period, inclusive.
+	 * @param out  The stream to write to. It's flushed but not closed.
+	 * @throws AccountNotFoundException If the name is not associated to any
+	 *                                  account.
+	 * @throws IOException              If the stream can't be written.
+	 */
+	void writeStatement(String name, Instant from, Instant to, OutputStream out)
+			throws AccountNotFoundException, IOException;
+
+	/**
+	 * Writes a dump of every account to a new file, which becomes the latest
+	 * export once complete.
+	 *
+	 * @return The file written.
+	 * @throws IOException If the file can't be written.
+	 */
+	Path exportAccounts() throws IOException;
+
+	/**
+	 * Returns the latest complete dump of the accounts.
+	 *
+	 * @return The file of the latest dump, null if there's none.
+	 * @throws IOException If the exports can't be listed.
+	 */
+	Path latestAccountsExport() throws IOException;
+
+}
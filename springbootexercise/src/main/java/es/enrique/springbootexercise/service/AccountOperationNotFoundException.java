@@ -0,0 +1,18 @@
+package es.enrique.springbootexercise.service;
+
+/**
+ * Exception thrown when a query for an operation is made but no operation
+ * matches the given id.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountOperationNotFoundException extends Exception {
+
+	private static final long serialVersionUID = -3851262718704512396L;
+
+	public AccountOperationNotFoundException() {
+		super("Operation not found!");
+	}
+
+}
@@ -0,0 +1,52 @@
+package es.enrique.springbootexercise.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import es.enrique.springbootexercise.model.AccountOperation;
+import es.enrique.springbootexercise.model.AccountOperation.Type;
+
+/**
+ * Service layer interface for deposits, withdrawals and transfers that are
+ * accepted right away and applied asynchronously. Operations on the same
+ * account are applied in the order they were accepted.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface AccountOperationService {
+
+	/**
+	 * Accepts an operation to be applied later. The operation is stored before
+	 * returning, so it's applied even if the application stops meanwhile.
+	 *
+	 * @param type            The type of the operation.
+	 * @param nameAccountFrom The account deposited to, withdrawn from, or the
+	 *                        money is sent from.
+	 * @param nameAccountTo   The account that receives the money of a transfer,
+	 *                        null otherwise.
+	 * @param money           The amount of money.
+	 * @return The accepted operation, still pending.
+	 */
+	AccountOperation submit(Type type, String nameAccountFrom, String nameAccountTo, Double money);
+
+	/**
+	 * Finds an operation by its id.
+	 *
+	 * @param id The id of the operation.
+	 * @return The operation, with its outcome if it was applied.
+	 * @throws AccountOperationNotFoundException If no operation has that id.
+	 */
+	AccountOperation find(Long id) throws AccountOperationNotFoundException;
+
+	/**
+	 * Returns a future completed with the operation once it's applied or failed.
+	 * It's already completed if the operation isn't pending anymore. Cancel it to
+	 * stop waiting.
+	 *
+	 * @param id The id of the operation.
+	 * @return The future outcome of the operation.
+	 * @throws AccountOperationNotFoundException If no operation has that id.
+	 */
+	CompletableFuture<AccountOperation> completion(Long id) throws AccountOperationNotFoundException;
+
+}
@@ -0,0 +1,72 @@
+package es.enrique.springbootexercise.service;
+
+/**
+ * Assigns the accounts to the nodes of the cluster. Account names are hashed
+ * into partitions, the partitions are spread over the live nodes with a
+ * consistent-hash ring and each node holds a renewable lease on the partitions
+ * it owns. Only the holder of a lease serves the accounts of the partition
+ * from memory.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface AccountOwnershipService {
+
+	/**
+	 * @param name The name of the account.
+	 * @return the partition of the account
+	 */
+	int partitionOf(String name);
+
+	/**
+	 * Returns the term of the lease this node holds on the partition. A new term
+	 * starts whenever the lease is taken anew, so state kept under an earlier
+	 * term must not be trusted.
+	 *
+	 * @param partition The partition.
+	 * @return the term of the live lease, or 0 if this node doesn't hold it
+	 */
+	long leaseTerm(int partition);
+
+	/**
+	 * Returns the node that must serve the account. If nobody holds its partition
+	 * and this node is the one it's assigned to, the lease is taken right away.
+	 *
+	 * @param name The name of the account.
+	 * @return the url of the owner node, or null if it's this node
+	 */
+	String ownerOf(String name);
+
+	/**
+	 * Tells the owner of the account that the state it keeps in memory is stale,
+	 * after the account was changed by another node. Sent again until the owner
+	 * gets it or gives up the partition.
+	 *
+	 * @param name The name of the changed account.
+	 */
+	void invalidate(String name);
+
+	/**
+	 * Tells every other node of the cluster that all the state it keeps in
+	 * memory is stale, after many accounts were changed at once. Sent again to
+	 * every node that doesn't get it while it stays in the cluster.
+	 */
+	void invalidateAll();
+
+	/**
+	 * Tells every other node of the cluster about a new account, so they can
+	 * find it by its name. Sent again to every node that doesn't get it while it
+	 * stays in the cluster.
+	 *
+	 * @param id   The id of the account.
+	 * @param name The name of the account.
+	 */
+	void announce(Integer id, String name);
+
+	/**
+	 * @return the url other nodes reach this node at, or null before the server is
+	 *         started
+	 */
+	String getNodeUrl();
+
+}
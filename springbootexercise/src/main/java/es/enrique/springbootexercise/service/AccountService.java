@@ -1,8 +1,13 @@
 package es.enrique.springbootexercise.service;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.stereotype.Service;
 
 import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
 
 /**
  * Service layer interface for manipulating {@link Account} objects in the
@@ -14,6 +19,12 @@ import es.enrique.springbootexercise.model.Account;
 @Service
 public interface AccountService {
 
+	/**
+	 * Qualifier of the implementation that stores the accounts, for the services
+	 * put in front of it.
+	 */
+	String STORAGE = "accountStorage";
+
 	/**
 	 * Creates a new {@link Account} with the given name and currency and sets the
 	 * treasury property for the account. If the name already exists in the systems,
@@ -40,6 +51,38 @@ public interface AccountService {
 	 */
 	Account find(String name) throws AccountNotFoundException;
 
+	/**
+	 * Return a read-only view of the {@link Account} associated to the given name.
+	 * The row is mapped straight into the view, without loading the entity.
+	 * 
+	 * @param name The name of the account to find.
+	 * @throws AccountNotFoundException If the name is not associated to any
+	 *                                  account.
+	 */
+	AccountView findView(String name) throws AccountNotFoundException;
+
+	/**
+	 * Return read-only views of the {@link Account}s associated to the given
+	 * names. The names are resolved in chunks of
+	 * {@code accounts.lookup.chunk-size}, with one query per chunk.
+	 * 
+	 * @param names The names of the accounts to find.
+	 * @return The accounts found, in no particular order. Names not associated to
+	 *         any account are left out.
+	 */
+	List<AccountView> findViews(Collection<String> names);
+
+	/**
+	 * Finds the accounts whose name starts with the given prefix, ignoring case.
+	 * Served from the in-memory name index, the accounts are returned in name
+	 * order.
+	 * 
+	 * @param prefix The start of the names to look for.
+	 * @param limit  The maximum number of accounts to return.
+	 * @return The id and name of the accounts found.
+	 */
+	List<AccountSummary> search(String prefix, int limit);
+
 	/**
 	 * Increments the money of the account associated to the given name by the
 	 * amount indicated.
@@ -0,0 +1,35 @@
+package es.enrique.springbootexercise.service;
+
+import java.math.BigDecimal;
+
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.SweepReport;
+
+/**
+ * Service layer interface for applying interest and fees to every
+ * {@link Account} in bulk.
+ * 
+ * @author Enrique Rosales
+ *
+ */
+public interface AccountSweepService {
+
+	/**
+	 * Applies interest to every positive balance and a fee to every non-treasury
+	 * account. The fee never takes a balance below 0. Each account gets a single
+	 * balance change with the net amount.
+	 * 
+	 * A sweep is identified by its id. Running it again resumes it where it was
+	 * left, and accounts already swept aren't changed twice.
+	 * 
+	 * @param sweepId      The id of the sweep, like the month it closes.
+	 * @param interestRate The interest applied to positive balances, as a
+	 *                     fraction of the balance.
+	 * @param fee          The fee charged to non-treasury accounts.
+	 * @return The report of this run.
+	 * @throws SweepConflictException If the sweep was started before with other
+	 *                                rates.
+	 */
+	SweepReport sweep(String sweepId, BigDecimal interestRate, BigDecimal fee) throws SweepConflictException;
+
+}
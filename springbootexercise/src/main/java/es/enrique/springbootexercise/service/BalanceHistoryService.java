@@ -0,0 +1,48 @@
+package es.enrique.springbootexercise.service;
+
+import java.time.Instant;
+
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountBalance;
+
+/**
+ * Service layer interface for recording the balance changes of the
+ * {@link Account}s and querying their past balances.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface BalanceHistoryService {
+
+	/**
+	 * Records the creation of an account, from which point its balance is known.
+	 * Must be called in the transaction that creates the account.
+	 *
+	 * @param account The newly created account.
+	 */
+	void recordCreation(Account account);
+
+	/**
+	 * Records a change of the balance of an account, taking a checkpoint of its
+	 * balance every few changes. Must be called in the transaction that updates
+	 * the account, once its balance has been updated.
+	 *
+	 * @param account The updated account.
+	 * @param amount  The amount added to the balance, negative for withdrawals.
+	 */
+	void recordChange(Account account, Double amount);
+
+	/**
+	 * Returns the balance an account had at the given time. Only the changes made
+	 * since the nearest checkpoint are replayed.
+	 *
+	 * @param name The name of the account.
+	 * @param at   The time of the balance.
+	 * @return The balance of the account at that time.
+	 * @throws AccountNotFoundException If the name is not associated to any
+	 *                                  account, or the account didn't exist at
+	 *                                  that time.
+	 */
+	AccountBalance balanceAt(String name, Instant at) throws AccountNotFoundException;
+
+}
@@ -0,0 +1,18 @@
+package es.enrique.springbootexercise.service;
+
+/**
+ * Exception thrown when a query for a scheduled transfer is made but no
+ * scheduled transfer matches the given id.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class ScheduledTransferNotFoundException extends Exception {
+
+	private static final long serialVersionUID = 2794120745330318176L;
+
+	public ScheduledTransferNotFoundException() {
+		super("Scheduled transfer not found!");
+	}
+
+}
@@ -0,0 +1,42 @@
+package es.enrique.springbootexercise.service;
+
+import java.time.Instant;
+
+import es.enrique.springbootexercise.model.ScheduledTransfer;
+
+/**
+ * Service layer interface for scheduling transfers to be executed at a later
+ * time, once or repeatedly.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface ScheduledTransferService {
+
+	/**
+	 * Schedules a transfer. Transfers scheduled in the past are executed right
+	 * away.
+	 *
+	 * @param nameAccountFrom The account from where the money is sent.
+	 * @param nameAccountTo   The account that receives the money.
+	 * @param money           The amount of money to transfer.
+	 * @param executeAt       The time of the first execution.
+	 * @param repeatSeconds   The seconds between executions, or null to execute
+	 *                        it only once.
+	 * @return The scheduled transfer.
+	 * @throws AccountNotFoundException If any of the accounts doesn't exist.
+	 */
+	ScheduledTransfer schedule(String nameAccountFrom, String nameAccountTo, Double money, Instant executeAt,
+			Long repeatSeconds) throws AccountNotFoundException;
+
+	/**
+	 * Finds a scheduled transfer by its id.
+	 *
+	 * @param id The id of the scheduled transfer.
+	 * @return The scheduled transfer.
+	 * @throws ScheduledTransferNotFoundException If no scheduled transfer has that
+	 *                                            id.
+	 */
+	ScheduledTransfer find(Long id) throws ScheduledTransferNotFoundException;
+
+}
@@ -0,0 +1,18 @@
+package es.enrique.springbootexercise.service;
+
+/**
+ * Exception thrown when a sweep is run again with an id already used by a
+ * sweep with other rates.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class SweepConflictException extends Exception {
+
+	private static final long serialVersionUID = -4032981652460733618L;
+
+	public SweepConflictException() {
+		super("Sweep already started with other rates!");
+	}
+
+}
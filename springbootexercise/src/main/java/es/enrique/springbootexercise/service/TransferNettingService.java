@@ -0,0 +1,49 @@
+package es.enrique.springbootexercise.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Service layer interface for transfers whose effects are netted over a short
+ * window before being written to the accounts.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public interface TransferNettingService {
+
+	/**
+	 * Accepts a transfer to be applied with the next flush. The transfer is
+	 * rejected right away if the worst-case balance of a non-treasury sender, its
+	 * balance minus every debit still pending, would go below 0.
+	 *
+	 * @param accountFrom The account from which the money is sent.
+	 * @param accountTo   The account that receives the money.
+	 * @param amount      The amount of money to transfer.
+	 * @throws NegativeBalanceException If the worst-case balance of the sender
+	 *                                  would go below 0 and it's not a treasury
+	 *                                  account.
+	 * @throws AccountNotFoundException If any of the names is not associated to
+	 *                                  any account.
+	 * @throws ArithmeticException      If the amount has more decimals than the
+	 *                                  currency of either account.
+	 */
+	void transfer(String accountFrom, String accountTo, Double amount)
+			throws NegativeBalanceException, AccountNotFoundException;
+
+	/**
+	 * Returns the money accepted to be sent from an account and not written yet.
+	 * Must be called holding the lock of the account for the result to stay
+	 * valid.
+	 *
+	 * @param accountName The name of the account.
+	 * @return The pending debits of the account, 0 if none.
+	 */
+	BigDecimal pendingDebits(String accountName);
+
+	/**
+	 * Writes the net movement of the transfers accepted so far, in a single
+	 * transaction.
+	 */
+	void flush();
+
+}
@@ -0,0 +1,190 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import es.enrique.springbootexercise.service.AccountExportService;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.BalanceHistoryService;
+
+/**
+ * Implementation of {@link AccountExportService} reading the tables with plain
+ * JDBC.
+ *
+ * Rows are fetched from a cursor a few at a time and written through a fixed
+ * buffer, without building entities nor lists of them. The dumps are written
+ * to a temporary file and moved into place once complete, so a dump being sent
+ * is never a partial one. The previous dump is kept, as it may still be being
+ * sent.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class AccountExportServiceImpl implements AccountExportService {
+
+	private static final String SELECT_CHANGES = "SELECT id, changed_at, amount FROM balance_changes WHERE account_id = ? AND changed_at > ? AND changed_at <= ? ORDER BY id";
+	private static final String SELECT_ACCOUNTS = "SELECT id, name, currency, money, treasury FROM accounts ORDER BY id";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String EXPORT_PREFIX = "accounts-";
+	private static final String EXPORT_SUFFIX = ".csv";
+	private static final int EXPORTS_KEPT = 2;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final BalanceHistoryService history;
+	private final Path directory;
+
+	@Autowired
+	public AccountExportServiceImpl(DataSource dataSource, BalanceHistoryService history,
+			@Value("${accounts.export.fetch-size:1000}") int fetchSize,
+			@Value("${accounts.export.directory:${java.io.tmpdir}/accounts-exports}") String directory) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+		this.history = history;
+		this.directory = Paths.get(directory);
+	}
+
+	@Override
+	public void writeStatement(String name, Instant from, Instant to, OutputStream out)
+			throws AccountNotFoundException, IOException {
+		Integer accountId;
+		try {
+			accountId = jdbcTemplate.queryForObject("SELECT id FROM accounts WHERE name = ?", Integer.class, name);
+		} catch (EmptyResultDataAccessException e) {
+			throw new AccountNotFoundException();
+		}
+
+		BigDecimal opening = BigDecimal.ZERO;
+		if (from != null) {
+			try {
+				opening = history.balanceAt(name, from).getMoney();
+			} catch (AccountNotFoundException e) {
+				// Created after the start of the period, with no money.
+			}
+		}
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		writer.write("id,changed_at,amount,balance\n");
+		BigDecimal[] balance = { opening };
+		query(SELECT_CHANGES, rs -> {
+			BigDecimal amount = rs.getBigDecimal("amount");
+			balance[0] = balance[0].add(amount);
+			write(writer, rs.getLong("id"), rs.getTimestamp("changed_at").toInstant(), amount.toPlainString(),
+					balance[0].toPlainString());
+		}, accountId, Timestamp.from(from != null ? from : Instant.EPOCH), Timestamp.from(to));
+		writer.flush();
+	}
+
+	@Override
+	public synchronized Path exportAccounts() throws IOException {
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, EXPORT_PREFIX, ".tmp");
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(temporary), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			writer.write("id,name,currency,money,treasury\n");
+			query(SELECT_ACCOUNTS, rs -> write(writer, rs.getInt("id"), rs.getString("name"),
+					rs.getString("currency"), rs.getBigDecimal("money").toPlainString(), rs.getBoolean("treasury")));
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+
+		// Zero padded, so the names sort by the time of the export.
+		Path export = directory
+				.resolve(String.format("%s%013d%s", EXPORT_PREFIX, System.currentTimeMillis(), EXPORT_SUFFIX));
+		Files.move(temporary, export, StandardCopyOption.ATOMIC_MOVE);
+
+		List<Path> exports = listExports();
+		for (int i = 0; i < exports.size() - EXPORTS_KEPT; i++) {
+			Files.deleteIfExists(exports.get(i));
+		}
+		return export;
+	}
+
+	@Override
+	public Path latestAccountsExport() throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return null;
+		}
+		List<Path> exports = listExports();
+		return exports.isEmpty() ? null : exports.get(exports.size() - 1);
+	}
+
+	/**
+	 * Lists the complete dumps, oldest first.
+	 */
+	private List<Path> listExports() throws IOException {
+		List<Path> exports = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+				EXPORT_PREFIX + "*" + EXPORT_SUFFIX)) {
+			for (Path file : files) {
+				exports.add(file);
+			}
+		}
+		Collections.sort(exports);
+		return exports;
+	}
+
+	/**
+	 * Runs a query handing every row to the handler, rethrowing the errors
+	 * writing the rows.
+	 */
+	private void query(String sql, RowCallbackHandler handler, Object... args) throws IOException {
+		try {
+			jdbcTemplate.query(sql, handler, args);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes a CSV row, quoting the fields that need it.
+	 */
+	private static void write(Writer writer, Object... fields) {
+		try {
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				String field = String.valueOf(fields[i]);
+				if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+						|| field.indexOf('\r') >= 0) {
+					field = '"' + field.replace("\"", "\"\"") + '"';
+				}
+				writer.write(field);
+			}
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,303 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.enrique.springbootexercise.dao.AccountOperationRepository;
+import es.enrique.springbootexercise.model.AccountOperation;
+import es.enrique.springbootexercise.model.AccountOperation.Status;
+import es.enrique.springbootexercise.model.AccountOperation.Type;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountOperationNotFoundException;
+import es.enrique.springbootexercise.service.AccountOperationService;
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.NegativeBalanceException;
+
+/**
+ * Implementation of {@link AccountOperationService} applying the operations on
+ * a fixed number of single-threaded lanes.
+ *
+ * Every account is hashed to a lane, and its operations run there in the order
+ * they were accepted. A transfer between accounts of two lanes holds both: it
+ * runs on the lane of the sender once the lane of the receiver reaches it, and
+ * that lane waits until it's applied. Operations are queued on every lane
+ * under a single lock, so all lanes see them in the same order and can't wait
+ * on each other in a cycle.
+ *
+ * An operation is applied through {@link AccountService} in the same
+ * transaction that records its outcome, after locking its row, so it's applied
+ * exactly once even if it's queued twice. Operations still pending when the
+ * application is ready are queued again, and new ones wait for them to be
+ * queued first. In cluster mode only the operations sent by accounts this node
+ * owns are taken over, as the owners of the rest have them queued already.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "accounts.async.enabled", havingValue = "true")
+public class AccountOperationServiceImpl implements AccountOperationService {
+
+	private static final int MAX_ERROR_LENGTH = 250;
+
+	@Autowired
+	AccountOperationRepository repository;
+
+	@Autowired
+	AccountService accountService;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	// Only present in cluster mode.
+	@Autowired(required = false)
+	AccountOwnershipService ownership;
+
+	@Value("${accounts.async.lanes:8}")
+	int laneCount;
+
+	private final Map<Long, List<CompletableFuture<AccountOperation>>> waiters = new ConcurrentHashMap<>();
+	private final CountDownLatch recovered = new CountDownLatch(1);
+	private TransactionTemplate transactions;
+	private ExecutorService[] lanes;
+	private volatile boolean stopping;
+
+	@PostConstruct
+	public void init() {
+		transactions = new TransactionTemplate(transactionManager);
+		lanes = new ExecutorService[laneCount];
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = Executors.newSingleThreadExecutor();
+		}
+	}
+
+	/**
+	 * Queues again the operations left pending by the last run, once the node
+	 * knows which accounts it owns.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void recover() {
+		try {
+			for (AccountOperation operation : repository.findByStatusOrderById(Status.PENDING)) {
+				if (ownership == null || ownership.ownerOf(operation.getAccountFrom()) == null) {
+					dispatch(operation);
+				}
+			}
+		} finally {
+			recovered.countDown();
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		// The operations still queued are left pending, to be recovered on the next
+		// startup.
+		stopping = true;
+		for (ExecutorService lane : lanes) {
+			lane.shutdown();
+		}
+		for (ExecutorService lane : lanes) {
+			lane.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	@Override
+	public AccountOperation submit(Type type, String nameAccountFrom, String nameAccountTo, Double money) {
+		AccountOperation operation = repository
+				.save(new AccountOperation(type, nameAccountFrom, type == Type.TRANSFER ? nameAccountTo : null, money));
+		// After the ones left pending. If the recovery read this one as well, it's
+		// already applied the second time it runs.
+		if (await(recovered)) {
+			dispatch(operation);
+		}
+		return operation;
+	}
+
+	@Override
+	// Operations aren't replicated, keep the lookup on the primary.
+	@Transactional
+	public AccountOperation find(Long id) throws AccountOperationNotFoundException {
+		return repository.findById(id).orElseThrow(AccountOperationNotFoundException::new);
+	}
+
+	@Override
+	public CompletableFuture<AccountOperation> completion(Long id) throws AccountOperationNotFoundException {
+		// Registered before reading the status, so an outcome recorded in between
+		// is either read or notified.
+		CompletableFuture<AccountOperation> future = new CompletableFuture<>();
+		waiters.compute(id, (key, futures) -> {
+			List<CompletableFuture<AccountOperation>> waiting = futures == null ? new ArrayList<>() : futures;
+			waiting.add(future);
+			return waiting;
+		});
+		// Also when cancelled by a waiter giving up.
+		future.whenComplete((operation, error) -> forget(id, future));
+
+		AccountOperation operation;
+		try {
+			operation = find(id);
+		} catch (AccountOperationNotFoundException e) {
+			forget(id, future);
+			throw e;
+		}
+		if (operation.getStatus() != Status.PENDING) {
+			future.complete(operation);
+		}
+		return future;
+	}
+
+	/**
+	 * @return the number of operations waited on
+	 */
+	public int waiting() {
+		return waiters.size();
+	}
+
+	private void forget(Long id, CompletableFuture<AccountOperation> future) {
+		waiters.computeIfPresent(id, (key, futures) -> {
+			futures.remove(future);
+			return futures.isEmpty() ? null : futures;
+		});
+	}
+
+	private ExecutorService lane(String accountName) {
+		return lanes[Math.floorMod(accountName.hashCode(), lanes.length)];
+	}
+
+	private void dispatch(AccountOperation operation) {
+		Long id = operation.getId();
+		ExecutorService sender = lane(operation.getAccountFrom());
+		ExecutorService receiver = operation.getAccountTo() == null ? sender : lane(operation.getAccountTo());
+
+		synchronized (lanes) {
+			if (sender == receiver) {
+				sender.execute(() -> apply(id));
+				return;
+			}
+
+			CountDownLatch reached = new CountDownLatch(1);
+			CountDownLatch applied = new CountDownLatch(1);
+			receiver.execute(() -> {
+				reached.countDown();
+				await(applied);
+			});
+			sender.execute(() -> {
+				try {
+					if (await(reached)) {
+						apply(id);
+					}
+				} finally {
+					applied.countDown();
+				}
+			});
+		}
+	}
+
+	private boolean await(CountDownLatch latch) {
+		try {
+			latch.await();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void apply(Long id) {
+		if (stopping) {
+			return;
+		}
+
+		AccountOperation operation;
+		try {
+			operation = transactions.execute(status -> {
+				AccountOperation pending = repository.findByIdForUpdate(id);
+				if (pending != null && pending.getStatus() == Status.PENDING) {
+					execute(pending);
+				}
+				return pending;
+			});
+		} catch (RuntimeException e) {
+			operation = fail(id, e);
+		}
+
+		if (operation != null && operation.getStatus() != Status.PENDING) {
+			List<CompletableFuture<AccountOperation>> futures = waiters.remove(id);
+			if (futures != null) {
+				for (CompletableFuture<AccountOperation> future : futures) {
+					future.complete(operation);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies an operation and records its outcome. Joins the transaction of the
+	 * caller, so the operation and its outcome are committed together.
+	 */
+	private void execute(AccountOperation operation) {
+		String error = null;
+		try {
+			switch (operation.getType()) {
+			case DEPOSIT:
+				accountService.deposit(operation.getAccountFrom(), operation.getMoney());
+				break;
+			case WITHDRAW:
+				accountService.withdraw(operation.getAccountFrom(), operation.getMoney());
+				break;
+			case TRANSFER:
+				accountService.transfer(operation.getAccountFrom(), operation.getAccountTo(), operation.getMoney());
+				break;
+			}
+		} catch (AccountNotFoundException | NegativeBalanceException e) {
+			error = e.getMessage();
+		}
+		operation.setStatus(error == null ? Status.DONE : Status.FAILED);
+		operation.setError(error);
+		operation.setAppliedAt(Instant.now());
+	}
+
+	/**
+	 * Records an operation as failed after its transaction was rolled back.
+	 */
+	private AccountOperation fail(Long id, RuntimeException cause) {
+		String error = String.valueOf(cause.getMessage());
+		try {
+			return transactions.execute(status -> {
+				AccountOperation operation = repository.findByIdForUpdate(id);
+				if (operation != null && operation.getStatus() == Status.PENDING) {
+					operation.setStatus(Status.FAILED);
+					operation.setError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+					operation.setAppliedAt(Instant.now());
+				}
+				return operation;
+			});
+		} catch (RuntimeException e) {
+			// Still pending on the database, it will be retried on the next startup.
+			return null;
+		}
+	}
+
+}
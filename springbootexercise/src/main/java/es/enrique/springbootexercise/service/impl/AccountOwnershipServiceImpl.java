@@ -0,0 +1,308 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import es.enrique.springbootexercise.dao.cluster.HashRing;
+import es.enrique.springbootexercise.dao.cluster.LeaseCoordinator;
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+
+/**
+ * Implementation of {@link AccountOwnershipService} on top of a
+ * {@link LeaseCoordinator}.
+ *
+ * Every renewal the node renews its membership lease, rebuilds the ring from
+ * the live members, takes or renews the leases of the partitions assigned to
+ * it and gives up the ones that aren't anymore. A lease is only relied on
+ * until a quarter of its time to live before it expires, counted from before
+ * it was asked for, which leaves room for the pause of a late renewal.
+ *
+ * Evictions that don't reach their node are sent again every renewal until
+ * they do, or until the node doesn't hold the partition anymore: views are only
+ * served under the lease they were loaded with, so a node that lost the
+ * partition has nothing stale left to serve. Clears and new accounts are sent
+ * again while the node stays in the cluster.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class AccountOwnershipServiceImpl implements AccountOwnershipService {
+
+	private static final String MEMBERS = "members/";
+	private static final String PARTITIONS = "partitions/";
+
+	private final LeaseCoordinator coordinator;
+	private final RestTemplate rest;
+	private final String configuredUrl;
+	private final int partitions;
+	private final int virtualNodes;
+	private final long leaseTtl;
+	private final long renewInterval;
+
+	private volatile String nodeUrl;
+	private volatile HashRing ring;
+
+	// Per partition, the term of the lease held and until when it can be relied on.
+	private final AtomicLongArray terms;
+	private final AtomicLongArray deadlines;
+	private long lastTerm;
+
+	// Evictions and new accounts to send again, by node, and nodes to clear again.
+	private final Map<String, Set<String>> unevicted = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Integer>> unannounced = new ConcurrentHashMap<>();
+	private final Set<String> uncleared = ConcurrentHashMap.newKeySet();
+	private ScheduledExecutorService retrier;
+
+	@Autowired
+	public AccountOwnershipServiceImpl(LeaseCoordinator coordinator, RestTemplate clusterRestTemplate,
+			@Value("${accounts.cluster.node-url:}") String nodeUrl,
+			@Value("${accounts.cluster.partitions:256}") int partitions,
+			@Value("${accounts.cluster.virtual-nodes:64}") int virtualNodes,
+			@Value("${accounts.cluster.lease-ttl:3000}") long leaseTtl,
+			@Value("${accounts.cluster.renew-interval:1000}") long renewInterval) {
+		this.coordinator = coordinator;
+		this.rest = clusterRestTemplate;
+		this.configuredUrl = nodeUrl;
+		this.partitions = partitions;
+		this.virtualNodes = virtualNodes;
+		this.leaseTtl = leaseTtl;
+		this.renewInterval = renewInterval;
+		this.ring = new HashRing(new TreeSet<>(), virtualNodes);
+		this.terms = new AtomicLongArray(partitions);
+		this.deadlines = new AtomicLongArray(partitions);
+	}
+
+	@PostConstruct
+	public void init() {
+		// Apart from the renewals, which mustn't wait for unreachable nodes.
+		retrier = Executors.newSingleThreadScheduledExecutor();
+		retrier.scheduleWithFixedDelay(this::resend, renewInterval, renewInterval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Joins the cluster once the server accepts requests, advertising the local
+	 * port unless {@code accounts.cluster.node-url} is set.
+	 */
+	@EventListener
+	public void join(WebServerInitializedEvent event) {
+		if (nodeUrl == null) {
+			nodeUrl = configuredUrl.isEmpty() ? "http://localhost:" + event.getWebServer().getPort() : configuredUrl;
+			renew();
+		}
+	}
+
+	/**
+	 * Renews the membership and the partition leases of this node.
+	 */
+	@Scheduled(fixedDelayString = "${accounts.cluster.renew-interval:1000}")
+	public synchronized void renew() {
+		if (nodeUrl == null) {
+			return;
+		}
+		coordinator.tryAcquire(MEMBERS + nodeUrl, nodeUrl, leaseTtl);
+
+		Set<String> members = new TreeSet<>(coordinator.holders(MEMBERS).values());
+		if (!members.equals(ring.getNodes())) {
+			ring = new HashRing(members, virtualNodes);
+		}
+
+		for (int partition = 0; partition < partitions; partition++) {
+			if (nodeUrl.equals(ring.nodeFor(partitionKey(partition)))) {
+				acquire(partition);
+			} else if (terms.get(partition) != 0) {
+				release(partition);
+			}
+		}
+	}
+
+	/**
+	 * Leaves the cluster, giving up every lease so other nodes take over without
+	 * waiting for them to expire.
+	 */
+	@PreDestroy
+	public synchronized void leave() {
+		retrier.shutdownNow();
+		if (nodeUrl == null) {
+			return;
+		}
+		for (int partition = 0; partition < partitions; partition++) {
+			if (terms.get(partition) != 0) {
+				release(partition);
+			}
+		}
+		coordinator.release(MEMBERS + nodeUrl, nodeUrl);
+		nodeUrl = null;
+	}
+
+	@Override
+	public int partitionOf(String name) {
+		return Math.floorMod(HashRing.hash(name), partitions);
+	}
+
+	@Override
+	public long leaseTerm(int partition) {
+		long term = terms.get(partition);
+		return term != 0 && deadlines.get(partition) - System.nanoTime() > 0 ? term : 0;
+	}
+
+	@Override
+	public String ownerOf(String name) {
+		int partition = partitionOf(name);
+		String self = nodeUrl;
+		if (self == null || leaseTerm(partition) != 0) {
+			return null;
+		}
+
+		String holder = coordinator.holder(PARTITIONS + partition);
+		if (holder == null) {
+			String assigned = ring.nodeFor(partitionKey(partition));
+			if (assigned != null && !assigned.equals(self)) {
+				return assigned;
+			}
+			synchronized (this) {
+				if (acquire(partition)) {
+					return null;
+				}
+			}
+			holder = coordinator.holder(PARTITIONS + partition);
+		}
+		return holder == null || holder.equals(self) ? null : holder;
+	}
+
+	@Override
+	public void invalidate(String name) {
+		String holder = coordinator.holder(PARTITIONS + partitionOf(name));
+		if (holder == null || holder.equals(nodeUrl)) {
+			return;
+		}
+		if (!evict(holder, name)) {
+			unevicted.computeIfAbsent(holder, key -> ConcurrentHashMap.newKeySet()).add(name);
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		for (String member : coordinator.holders(MEMBERS).values()) {
+			if (!member.equals(nodeUrl) && !clear(member)) {
+				uncleared.add(member);
+			}
+		}
+	}
+
+	@Override
+	public void announce(Integer id, String name) {
+		for (String member : coordinator.holders(MEMBERS).values()) {
+			if (!member.equals(nodeUrl) && !announce(member, id, name)) {
+				unannounced.computeIfAbsent(member, key -> new ConcurrentHashMap<>()).put(name, id);
+			}
+		}
+	}
+
+	/**
+	 * Sends again the evictions that didn't reach their node, while it still
+	 * holds the partition of the account, and the clears and new accounts, while
+	 * it's still a member.
+	 */
+	void resend() {
+		for (Map.Entry<String, Set<String>> pending : unevicted.entrySet()) {
+			String holder = pending.getKey();
+			for (String name : pending.getValue()) {
+				if (holder.equals(coordinator.holder(PARTITIONS + partitionOf(name))) && !evict(holder, name)) {
+					// Still unreachable, the rest will fail as well.
+					break;
+				}
+				pending.getValue().remove(name);
+			}
+		}
+
+		if (uncleared.isEmpty() && unannounced.isEmpty()) {
+			return;
+		}
+		Set<String> members = new TreeSet<>(coordinator.holders(MEMBERS).values());
+		uncleared.removeIf(member -> !members.contains(member) || clear(member));
+		for (Map.Entry<String, Map<String, Integer>> pending : unannounced.entrySet()) {
+			String member = pending.getKey();
+			for (Map.Entry<String, Integer> account : pending.getValue().entrySet()) {
+				if (members.contains(member) && !announce(member, account.getValue(), account.getKey())) {
+					break;
+				}
+				pending.getValue().remove(account.getKey());
+			}
+		}
+	}
+
+	private boolean evict(String holder, String name) {
+		return post(holder + "/cluster/evict?name={name}", name);
+	}
+
+	private boolean announce(String member, Integer id, String name) {
+		return post(member + "/cluster/names?id={id}&name={name}", id, name);
+	}
+
+	private boolean clear(String member) {
+		return post(member + "/cluster/clear");
+	}
+
+	private boolean post(String url, Object... uriVariables) {
+		try {
+			// Error responses are passed on by the template rather than thrown.
+			return rest.postForEntity(url, null, Void.class, uriVariables).getStatusCode().is2xxSuccessful();
+		} catch (RestClientException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public String getNodeUrl() {
+		return nodeUrl;
+	}
+
+	private boolean acquire(int partition) {
+		long start = System.nanoTime();
+		if (!coordinator.tryAcquire(PARTITIONS + partition, nodeUrl, leaseTtl)) {
+			terms.set(partition, 0);
+			return false;
+		}
+
+		// Someone else may have held the partition if the lease lapsed in between.
+		if (terms.get(partition) == 0 || deadlines.get(partition) - start <= 0) {
+			terms.set(partition, ++lastTerm);
+		}
+		deadlines.set(partition, start + TimeUnit.MILLISECONDS.toNanos(leaseTtl - leaseTtl / 4));
+		return true;
+	}
+
+	private void release(int partition) {
+		// Stop relying on the lease before another node can take it.
+		terms.set(partition, 0);
+		deadlines.set(partition, 0);
+		coordinator.release(PARTITIONS + partition, nodeUrl);
+	}
+
+	private static String partitionKey(int partition) {
+		return "partition-" + partition;
+	}
+
+}
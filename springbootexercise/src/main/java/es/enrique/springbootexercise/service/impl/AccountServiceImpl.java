@@ -1,28 +1,80 @@
 package es.enrique.springbootexercise.service.impl;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.joda.money.Money;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import es.enrique.springbootexercise.dao.AccountNameIndex;
 import es.enrique.springbootexercise.dao.AccountRepository;
+import es.enrique.springbootexercise.dao.AccountViewRepository;
 import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
 import es.enrique.springbootexercise.service.AccountAlreadyExistsException;
 import es.enrique.springbootexercise.service.AccountNotFoundException;
 import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.BalanceHistoryService;
 import es.enrique.springbootexercise.service.NegativeBalanceException;
+import es.enrique.springbootexercise.service.TransferNettingService;
 
 /**
- * Implementation of {@link AccountService}.
+ * Implementation of {@link AccountService} backed by a single database through
+ * JPA. Replaced by {@link ShardedAccountServiceImpl} when sharding is enabled.
  * 
  * @author Enrique Rosales
  *
  */
 @Service
+@Qualifier(AccountService.STORAGE)
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "false", matchIfMissing = true)
 public class AccountServiceImpl implements AccountService {
 
 	@Autowired
 	AccountRepository repository;
 
+	@Autowired
+	AccountViewRepository viewRepository;
+
+	@Autowired
+	AccountNameIndex nameIndex;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	BalanceHistoryService history;
+
+	// Only present when netting is enabled.
+	@Autowired(required = false)
+	TransferNettingService netting;
+
+	@Value("${accounts.lookup.chunk-size:500}")
+	int lookupChunkSize;
+
+	/**
+	 * Loads the names of the existing accounts into the name index.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadNameIndex() {
+		jdbcTemplate.query("SELECT id, name FROM accounts", rs -> {
+			nameIndex.add(rs.getInt("id"), rs.getString("name"));
+		});
+	}
+
 	@Override
+	@Transactional
 	public void create(String name, String currency, Boolean treasury) throws AccountAlreadyExistsException {
 		if (repository.findByName(name) != null) {
 			// Account name already exists. Stop new account creation.
@@ -32,12 +84,25 @@ public class AccountServiceImpl implements AccountService {
 		Account account = new Account();
 		account.setName(name);
 		account.setCurrencyString(currency);
-		account.setMoneyDouble(0.0);
+		account.setMoney(Money.zero(account.getCurrency()));
 		account.setTreasury(treasury);
 		repository.save(account);
+		history.recordCreation(account);
+
+		// Only once committed, or a rolled back account would still be found by name.
+		Integer id = account.getId();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCommit() {
+				nameIndex.add(id, name);
+			}
+
+		});
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public Account find(String name) throws AccountNotFoundException {
 		Account found = repository.findByName(name);
 		if (found == null) {
@@ -47,58 +112,100 @@ public class AccountServiceImpl implements AccountService {
 	}
 
 	@Override
+	public AccountView findView(String name) throws AccountNotFoundException {
+		AccountView found = viewRepository.findByName(name);
+		if (found == null) {
+			throw new AccountNotFoundException();
+		}
+		return found;
+	}
+
+	@Override
+	public List<AccountView> findViews(Collection<String> names) {
+		return viewRepository.findByNames(names, lookupChunkSize);
+	}
+
+	@Override
+	public List<AccountSummary> search(String prefix, int limit) {
+		return nameIndex.search(prefix, limit);
+	}
+
+	@Override
+	@Transactional
 	public void deposit(String accountName, Double amount) throws AccountNotFoundException {
-		Account account = repository.findByName(accountName);
+		Account account = repository.findByNameForUpdate(accountName);
 		if (account == null) {
 			// The account doesn't exist.
 			throw new AccountNotFoundException();
 		}
 
 		account.setMoney(account.getMoney().plus(amount));
+		history.recordChange(account, amount);
 		repository.save(account);
 	}
 
 	@Override
+	@Transactional
 	public void withdraw(String accountName, Double amount) throws NegativeBalanceException, AccountNotFoundException {
-		Account account = repository.findByName(accountName);
+		Account account = repository.findByNameForUpdate(accountName);
 		if (account == null) {
 			// The account doesn't exist.
 			throw new AccountNotFoundException();
 		}
 
 		if (!account.getTreasury()) {
-			if (account.getMoney().getAmount().doubleValue() - amount < 0) {
+			if (available(account) - amount < 0) {
 				// Non-treasury account would go negative, don't do the operation.
 				throw new NegativeBalanceException();
 			}
 		}
 
 		account.setMoney(account.getMoney().minus(amount));
+		history.recordChange(account, -amount);
 		repository.save(account);
 
 	}
 
 	@Override
+	@Transactional
 	public void transfer(String accountFrom, String accountTo, Double amount)
 			throws NegativeBalanceException, AccountNotFoundException {
-		Account accountFromEntity = repository.findByName(accountFrom);
-		Account accountToEntity = repository.findByName(accountTo);
+		// Lock both accounts in name order so concurrent transfers can't deadlock.
+		boolean fromFirst = accountFrom.compareTo(accountTo) <= 0;
+		Account first = repository.findByNameForUpdate(fromFirst ? accountFrom : accountTo);
+		Account second = repository.findByNameForUpdate(fromFirst ? accountTo : accountFrom);
+		Account accountFromEntity = fromFirst ? first : second;
+		Account accountToEntity = fromFirst ? second : first;
 
 		if (accountFromEntity == null || accountToEntity == null) {
 			throw new AccountNotFoundException();
 		}
 
 		if (!accountFromEntity.getTreasury()) {
-			if (accountFromEntity.getMoney().getAmount().doubleValue() - amount < 0) {
+			if (available(accountFromEntity) - amount < 0) {
 				// Non-treasury account would go negative, don't do the operation.
 				throw new NegativeBalanceException();
 			}
 		}
 
 		accountFromEntity.setMoney(accountFromEntity.getMoney().minus(amount));
+		history.recordChange(accountFromEntity, -amount);
 		accountToEntity.setMoney(accountToEntity.getMoney().plus(amount));
+		history.recordChange(accountToEntity, amount);
 		repository.save(accountFromEntity);
 		repository.save(accountToEntity);
 	}
 
+	/**
+	 * Returns the balance of a locked account minus the debits accepted for
+	 * netting and not written yet.
+	 */
+	private double available(Account account) {
+		double money = account.getMoney().getAmount().doubleValue();
+		if (netting == null) {
+			return money;
+		}
+		return money - netting.pendingDebits(account.getName()).doubleValue();
+	}
+
 }
@@ -0,0 +1,266 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.money.CurrencyUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.enrique.springbootexercise.model.SweepReport;
+import es.enrique.springbootexercise.service.AccountSweepService;
+import es.enrique.springbootexercise.service.SweepConflictException;
+import es.enrique.springbootexercise.service.TransferNettingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Implementation of {@link AccountSweepService} working on the accounts table
+ * in chunks of consecutive ids.
+ *
+ * The chunks are split across a fork-join pool. Each chunk locks its rows,
+ * writes the new balances and their balance changes with batched statements
+ * and records itself as done in {@code sweep_chunks}, all in one transaction.
+ * Live operations on the accounts of a chunk wait for it to commit, and a
+ * chunk losing a lock to them is retried.
+ *
+ * Fees never take a non-treasury account below 0, counting the debits of
+ * netted transfers accepted and not written yet.
+ *
+ * The id range and chunk size are fixed when the sweep starts, so a resumed
+ * sweep splits the table the same way and skips the chunks already done.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class AccountSweepServiceImpl implements AccountSweepService {
+
+	private static final String INSERT_SWEEP = "INSERT INTO sweeps (id, interest_rate, fee, max_account_id, chunk_size, started_at) VALUES (?, ?, ?, ?, ?, ?)";
+	private static final String SELECT_CHUNK = "SELECT id, name, currency, money, treasury, history_changes FROM accounts WHERE id >= ? AND id < ? ORDER BY id FOR UPDATE";
+	private static final String UPDATE_ACCOUNT = "UPDATE accounts SET money = ?, history_changes = ? WHERE id = ?";
+	private static final String INSERT_CHANGE = "INSERT INTO balance_changes (account_id, changed_at, amount) VALUES (?, ?, ?)";
+	private static final String INSERT_CHECKPOINT = "INSERT INTO balance_checkpoints (account_id, taken_at, money, change_id) SELECT ?, ?, ?, MAX(id) FROM balance_changes WHERE account_id = ?";
+	private static final String INSERT_CHUNK = "INSERT INTO sweep_chunks (sweep_id, first_account_id, accounts, done_at) VALUES (?, ?, ?, ?)";
+
+	private static final class Sweep {
+		private final String id;
+		private final BigDecimal interestRate;
+		private final BigDecimal fee;
+		private final int maxAccountId;
+		private final int chunkSize;
+
+		private Sweep(String id, BigDecimal interestRate, BigDecimal fee, int maxAccountId, int chunkSize) {
+			this.id = id;
+			this.interestRate = interestRate;
+			this.fee = fee;
+			this.maxAccountId = maxAccountId;
+			this.chunkSize = chunkSize;
+		}
+	}
+
+	/**
+	 * Sweeps a range of chunks, splitting it in halves down to single chunks.
+	 * Returns the accounts changed, the chunks done and the chunks skipped.
+	 */
+	private final class ChunkRange extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Sweep sweep;
+		private final Set<Integer> done;
+		private final int from;
+		private final int to;
+
+		private ChunkRange(Sweep sweep, Set<Integer> done, int from, int to) {
+			this.sweep = sweep;
+			this.done = done;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from == 1) {
+				return sweepChunk(sweep, from * sweep.chunkSize, done);
+			}
+			int middle = (from + to) >>> 1;
+			ChunkRange left = new ChunkRange(sweep, done, from, middle);
+			ChunkRange right = new ChunkRange(sweep, done, middle, to);
+			invokeAll(left, right);
+			long[] totals = left.join();
+			long[] other = right.join();
+			for (int i = 0; i < totals.length; i++) {
+				totals[i] += other[i];
+			}
+			return totals;
+		}
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactions;
+	private final ApplicationEventPublisher events;
+	private final Timer chunkTimer;
+	private final int chunkSize;
+	private final int parallelism;
+	private final int attempts;
+	private final int checkpointInterval;
+
+	// Only present when netting is enabled.
+	@Autowired(required = false)
+	private TransferNettingService netting;
+
+	@Autowired
+	public AccountSweepServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			ApplicationEventPublisher events, MeterRegistry registry,
+			@Value("${accounts.sweep.chunk-size:1000}") int chunkSize,
+			@Value("${accounts.sweep.parallelism:4}") int parallelism,
+			@Value("${accounts.sweep.attempts:5}") int attempts,
+			@Value("${accounts.history.checkpoint-interval:100}") int checkpointInterval) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.events = events;
+		this.chunkTimer = registry.timer("accounts.sweep.chunks");
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+		this.attempts = attempts;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	@Override
+	public SweepReport sweep(String sweepId, BigDecimal interestRate, BigDecimal fee) throws SweepConflictException {
+		long start = System.nanoTime();
+		Sweep sweep = begin(sweepId, interestRate, fee);
+		Set<Integer> done = new HashSet<>(jdbcTemplate
+				.queryForList("SELECT first_account_id FROM sweep_chunks WHERE sweep_id = ?", Integer.class, sweepId));
+
+		long[] totals;
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			totals = pool.invoke(new ChunkRange(sweep, done, 0, sweep.maxAccountId / sweep.chunkSize + 1));
+		} finally {
+			pool.shutdown();
+		}
+		jdbcTemplate.update("UPDATE sweeps SET finished_at = ? WHERE id = ? AND finished_at IS NULL",
+				Timestamp.from(Instant.now()), sweepId);
+
+		SweepReport report = new SweepReport(sweepId, totals[0], totals[1], totals[2],
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		events.publishEvent(report);
+		return report;
+	}
+
+	/**
+	 * Starts the sweep, or loads it if it was started before.
+	 */
+	private Sweep begin(String sweepId, BigDecimal interestRate, BigDecimal fee) throws SweepConflictException {
+		try {
+			Integer maxAccountId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM accounts",
+					Integer.class);
+			jdbcTemplate.update(INSERT_SWEEP, sweepId, interestRate, fee, maxAccountId, chunkSize,
+					Timestamp.from(Instant.now()));
+		} catch (DuplicateKeyException e) {
+			// Started before, resume it.
+		}
+
+		Sweep sweep = jdbcTemplate.queryForObject(
+				"SELECT id, interest_rate, fee, max_account_id, chunk_size FROM sweeps WHERE id = ?",
+				(rs, rowNum) -> new Sweep(rs.getString("id"), rs.getBigDecimal("interest_rate"),
+						rs.getBigDecimal("fee"), rs.getInt("max_account_id"), rs.getInt("chunk_size")),
+				sweepId);
+		if (sweep.interestRate.compareTo(interestRate) != 0 || sweep.fee.compareTo(fee) != 0) {
+			throw new SweepConflictException();
+		}
+		return sweep;
+	}
+
+	private long[] sweepChunk(Sweep sweep, int firstAccountId, Set<Integer> done) {
+		if (done.contains(firstAccountId)) {
+			return new long[] { 0, 0, 1 };
+		}
+
+		for (int attempt = 1;; attempt++) {
+			long start = System.nanoTime();
+			try {
+				int accounts = transactions.execute(status -> applyChunk(sweep, firstAccountId));
+				chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				return new long[] { accounts, 1, 0 };
+			} catch (DuplicateKeyException e) {
+				// Another run of the same sweep did the chunk meanwhile.
+				return new long[] { 0, 0, 1 };
+			} catch (ConcurrencyFailureException e) {
+				// Deadlock or lock timeout against live operations.
+				if (attempt >= attempts) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private int applyChunk(Sweep sweep, int firstAccountId) {
+		Timestamp now = Timestamp.from(Instant.now());
+		List<Object[]> updates = new ArrayList<>();
+		List<Object[]> changes = new ArrayList<>();
+		List<Object[]> checkpoints = new ArrayList<>();
+
+		jdbcTemplate.query(SELECT_CHUNK, (RowCallbackHandler) rs -> {
+			int id = rs.getInt("id");
+			BigDecimal money = rs.getBigDecimal("money");
+			int scale = Math.max(0, CurrencyUnit.of(rs.getString("currency")).getDecimalPlaces());
+
+			// Balances keep the scale of their currency, or they can't be read as Money.
+			BigDecimal amount = BigDecimal.ZERO;
+			if (money.signum() > 0) {
+				amount = money.multiply(sweep.interestRate).setScale(scale, RoundingMode.HALF_EVEN);
+			}
+			if (!rs.getBoolean("treasury")) {
+				BigDecimal available = money.add(amount);
+				if (netting != null) {
+					// The row is locked, so no other debit can be accepted meanwhile.
+					available = available.subtract(netting.pendingDebits(rs.getString("name")));
+				}
+				available = available.max(BigDecimal.ZERO);
+				amount = amount.subtract(sweep.fee.setScale(scale, RoundingMode.HALF_EVEN).min(available));
+			}
+			if (amount.signum() == 0) {
+				return;
+			}
+
+			BigDecimal balance = money.add(amount);
+			int historyChanges = rs.getInt("history_changes") + 1;
+			if (historyChanges >= checkpointInterval) {
+				checkpoints.add(new Object[] { id, now, balance, id });
+				historyChanges = 0;
+			}
+			updates.add(new Object[] { balance, historyChanges, id });
+			changes.add(new Object[] { id, now, amount });
+		}, firstAccountId, Math.min((long) firstAccountId + sweep.chunkSize, sweep.maxAccountId + 1L));
+
+		jdbcTemplate.batchUpdate(UPDATE_ACCOUNT, updates);
+		jdbcTemplate.batchUpdate(INSERT_CHANGE, changes);
+		// After the changes, so the checkpoints point at them.
+		jdbcTemplate.batchUpdate(INSERT_CHECKPOINT, checkpoints);
+		jdbcTemplate.update(INSERT_CHUNK, sweep.id, firstAccountId, updates.size(), now);
+		return updates.size();
+	}
+
+}
@@ -0,0 +1,137 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import es.enrique.springbootexercise.model.AccountView;
+import es.enrique.springbootexercise.model.SweepReport;
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+
+/**
+ * Views of the accounts owned by this node, kept in memory. Every entry is
+ * tagged with the lease term it was loaded under and is only returned under
+ * that same term.
+ *
+ * Evictions bump a generation counter. A view loaded while an eviction
+ * happened is not stored, as it may have been read before the change.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class AccountViewCache {
+
+	private static final class Entry {
+		private final AccountView view;
+		private final long term;
+		private final long loadedAt;
+
+		private Entry(AccountView view, long term) {
+			this.view = view;
+			this.term = term;
+			this.loadedAt = System.nanoTime();
+		}
+	}
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+	private final long ttlNanos;
+
+	private final AccountOwnershipService ownership;
+
+	public AccountViewCache(AccountOwnershipService ownership, @Value("${accounts.cluster.cache-ttl:10000}") long ttl) {
+		this.ownership = ownership;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+	}
+
+	/**
+	 * @param name The name of the account.
+	 * @param term The term of the lease currently held on its partition.
+	 * @return the cached view, or null if there is none for the term
+	 */
+	public AccountView get(String name, long term) {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.term != term || System.nanoTime() - entry.loadedAt > ttlNanos) {
+			entries.remove(name, entry);
+			return null;
+		}
+		return entry.view;
+	}
+
+	/**
+	 * @return the generation to pass to {@link #put}, taken before loading
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	/**
+	 * Stores a view unless an eviction happened since the generation was taken.
+	 *
+	 * @param name       The name of the account.
+	 * @param view       The view loaded.
+	 * @param term       The term of the lease it was loaded under.
+	 * @param generation The generation taken before loading it.
+	 */
+	public void put(String name, AccountView view, long term, long generation) {
+		entries.compute(name,
+				(key, current) -> this.generation.get() == generation ? new Entry(view, term) : current);
+	}
+
+	/**
+	 * Drops the view of a changed account.
+	 *
+	 * @param name The name of the account.
+	 */
+	public void evict(String name) {
+		generation.incrementAndGet();
+		entries.remove(name);
+	}
+
+	/**
+	 * Drops every view.
+	 */
+	public void clear() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+
+	/**
+	 * Drops every view here and on the other nodes after a sweep changed the
+	 * balances behind them.
+	 */
+	@EventListener(SweepReport.class)
+	public void swept() {
+		clear();
+		ownership.invalidateAll();
+	}
+
+	/**
+	 * Drops the views older than the time to live, including the ones of
+	 * partitions no longer owned.
+	 */
+	@Scheduled(fixedDelayString = "${accounts.cluster.cache-ttl:10000}")
+	public void expire() {
+		long now = System.nanoTime();
+		entries.values().removeIf(entry -> now - entry.loadedAt > ttlNanos);
+	}
+
+	/**
+	 * @return the number of views cached
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+}
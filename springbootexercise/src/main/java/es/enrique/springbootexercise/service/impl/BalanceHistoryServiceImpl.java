@@ -0,0 +1,87 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import es.enrique.springbootexercise.dao.AccountRepository;
+import es.enrique.springbootexercise.dao.BalanceChangeRepository;
+import es.enrique.springbootexercise.dao.BalanceCheckpointRepository;
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountBalance;
+import es.enrique.springbootexercise.model.BalanceChange;
+import es.enrique.springbootexercise.model.BalanceCheckpoint;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.BalanceHistoryService;
+
+/**
+ * Implementation of {@link BalanceHistoryService}. A checkpoint is taken every
+ * {@code accounts.history.checkpoint-interval} changes of an account, so
+ * rebuilding a past balance never replays more than that many changes.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+public class BalanceHistoryServiceImpl implements BalanceHistoryService {
+
+	@Autowired
+	AccountRepository accountRepository;
+
+	@Autowired
+	BalanceChangeRepository changeRepository;
+
+	@Autowired
+	BalanceCheckpointRepository checkpointRepository;
+
+	@Value("${accounts.history.checkpoint-interval:100}")
+	int checkpointInterval;
+
+	@Override
+	public void recordCreation(Account account) {
+		checkpointRepository.save(
+				new BalanceCheckpoint(account.getId(), Instant.now(), account.getMoney().getAmount(), 0L));
+	}
+
+	@Override
+	public void recordChange(Account account, Double amount) {
+		Instant now = Instant.now();
+		BalanceChange change = changeRepository.save(new BalanceChange(account.getId(), now, BigDecimal.valueOf(amount)));
+
+		int changes = account.getHistoryChanges() + 1;
+		if (changes >= checkpointInterval) {
+			checkpointRepository.save(
+					new BalanceCheckpoint(account.getId(), now, account.getMoney().getAmount(), change.getId()));
+			changes = 0;
+		}
+		account.setHistoryChanges(changes);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public AccountBalance balanceAt(String name, Instant at) throws AccountNotFoundException {
+		Account account = accountRepository.findByName(name);
+		if (account == null) {
+			throw new AccountNotFoundException();
+		}
+
+		BalanceCheckpoint checkpoint = checkpointRepository
+				.findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(account.getId(), at);
+		if (checkpoint == null) {
+			// Every account gets a checkpoint when created, it didn't exist yet.
+			throw new AccountNotFoundException();
+		}
+
+		BigDecimal money = checkpoint.getMoney();
+		BigDecimal changes = changeRepository.sumChanges(account.getId(), checkpoint.getChangeId(), at);
+		if (changes != null) {
+			money = money.add(changes);
+		}
+		return new AccountBalance(account.getName(), account.getCurrencyString(), money, at);
+	}
+
+}
@@ -0,0 +1,176 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timer wheel holding the ids of the entries due at a given time.
+ *
+ * The root wheel has 256 slots of one tick each. It is followed by four wheels
+ * of 64 slots, each slot spanning a whole turn of the previous wheel, which
+ * covers 2^32 ticks ahead. Entries go to the wheel matching how far ahead they
+ * are due, and are cascaded into the lower wheels as their time gets closer.
+ * Scheduling and expiring an entry is constant time.
+ *
+ * Entries are stored as pairs of longs in growable arrays, so millions of them
+ * take a few tens of megabytes. Not thread-safe on its own, callers must
+ * synchronize.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class HierarchicalTimerWheel {
+
+	private static final int ROOT_BITS = 8;
+	private static final int LEVEL_BITS = 6;
+	private static final int LEVELS = 5;
+	private static final int ROOT_MASK = (1 << ROOT_BITS) - 1;
+	private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+
+	private final long tickMillis;
+	private final Bucket[][] wheels = new Bucket[LEVELS][];
+	private long currentTick;
+	private int size;
+
+	/**
+	 * @param tickMillis  The length of a tick in milliseconds.
+	 * @param startMillis The current time in milliseconds.
+	 */
+	public HierarchicalTimerWheel(long tickMillis, long startMillis) {
+		this.tickMillis = tickMillis;
+		this.currentTick = Math.floorDiv(startMillis, tickMillis);
+		wheels[0] = new Bucket[ROOT_MASK + 1];
+		for (int level = 1; level < LEVELS; level++) {
+			wheels[level] = new Bucket[LEVEL_MASK + 1];
+		}
+	}
+
+	/**
+	 * Schedules an entry. Entries already due expire on the next tick.
+	 *
+	 * @param id        The id of the entry.
+	 * @param dueMillis The time the entry is due, in milliseconds.
+	 */
+	public void schedule(long id, long dueMillis) {
+		// Round up, entries never expire before their time.
+		add(id, Math.floorDiv(dueMillis + tickMillis - 1, tickMillis));
+		size++;
+	}
+
+	/**
+	 * Advances the wheel up to the given time, passing the id of every entry that
+	 * expires to the consumer.
+	 *
+	 * @param nowMillis The current time in milliseconds.
+	 * @param expired   Receives the ids of the expired entries.
+	 */
+	public void advanceTo(long nowMillis, LongConsumer expired) {
+		long target = Math.floorDiv(nowMillis, tickMillis);
+		while (currentTick <= target) {
+			tick(expired);
+		}
+	}
+
+	/**
+	 * @return the number of entries not expired yet
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void tick(LongConsumer expired) {
+		int index = (int) (currentTick & ROOT_MASK);
+		if (index == 0) {
+			// A turn of the root wheel is done, bring down the entries of the next turn.
+			for (int level = 1; level < LEVELS; level++) {
+				int slot = slotOf(currentTick, level);
+				cascade(level, slot);
+				if (slot != 0) {
+					break;
+				}
+			}
+		}
+
+		Bucket due = wheels[0][index];
+		wheels[0][index] = null;
+		currentTick++;
+		if (due != null) {
+			size -= due.size;
+			for (int i = 0; i < due.size; i++) {
+				expired.accept(due.entries[2 * i]);
+			}
+		}
+	}
+
+	private void cascade(int level, int slot) {
+		Bucket bucket = wheels[level][slot];
+		wheels[level][slot] = null;
+		if (bucket != null) {
+			for (int i = 0; i < bucket.size; i++) {
+				add(bucket.entries[2 * i], bucket.entries[2 * i + 1]);
+			}
+		}
+	}
+
+	private void add(long id, long dueTick) {
+		long delta = dueTick - currentTick;
+		if (delta < 0) {
+			// Overdue, expire on the current tick.
+			bucket(0, (int) (currentTick & ROOT_MASK)).add(id, dueTick);
+			return;
+		}
+		if (delta <= ROOT_MASK) {
+			bucket(0, (int) (dueTick & ROOT_MASK)).add(id, dueTick);
+			return;
+		}
+
+		int level = 1;
+		while (level < LEVELS - 1 && delta >= span(level)) {
+			level++;
+		}
+		// Entries beyond the last wheel wait in its furthest slot and are placed
+		// again when it cascades.
+		long slotTick = delta < span(level) ? dueTick : currentTick + span(level) - 1;
+		bucket(level, slotOf(slotTick, level)).add(id, dueTick);
+	}
+
+	/**
+	 * @return the number of ticks ahead covered up to the given wheel
+	 */
+	private static long span(int level) {
+		return 1L << (ROOT_BITS + level * LEVEL_BITS);
+	}
+
+	private static int slotOf(long tick, int level) {
+		return (int) ((tick >> (ROOT_BITS + (level - 1) * LEVEL_BITS)) & LEVEL_MASK);
+	}
+
+	private Bucket bucket(int level, int slot) {
+		Bucket bucket = wheels[level][slot];
+		if (bucket == null) {
+			bucket = new Bucket();
+			wheels[level][slot] = bucket;
+		}
+		return bucket;
+	}
+
+	/**
+	 * Entries of a slot, stored as (id, due tick) pairs.
+	 */
+	private static final class Bucket {
+
+		private long[] entries = new long[8];
+		private int size;
+
+		private void add(long id, long dueTick) {
+			if (2 * size == entries.length) {
+				entries = Arrays.copyOf(entries, entries.length * 2);
+			}
+			entries[2 * size] = id;
+			entries[2 * size + 1] = dueTick;
+			size++;
+		}
+
+	}
+
+}
@@ -0,0 +1,139 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
+import es.enrique.springbootexercise.service.AccountAlreadyExistsException;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.NegativeBalanceException;
+
+/**
+ * {@link AccountService} that serves the views of the accounts owned by this
+ * node from an {@link AccountViewCache}, in front of the storage service.
+ *
+ * Writes always go to the storage service, which keeps the balances
+ * consistent whichever node makes them. After a write the view is evicted
+ * here and, when another node owns the account, on that node too. When the
+ * caller has a transaction open, the eviction waits until it commits, or a
+ * view loaded in between would cache the balance from before the write.
+ *
+ * Without a cache every view is read from the storage service.
+ *
+ * New accounts are announced to the other nodes once created, as each node
+ * only loads its name index from the database when it starts.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class OwnedAccountService implements AccountService {
+
+	private final AccountService delegate;
+	private final AccountOwnershipService ownership;
+	private final AccountViewCache cache;
+
+	public OwnedAccountService(AccountService delegate, AccountOwnershipService ownership, AccountViewCache cache) {
+		this.delegate = delegate;
+		this.ownership = ownership;
+		this.cache = cache;
+	}
+
+	@Override
+	public void create(String name, String currency, Boolean treasury) throws AccountAlreadyExistsException {
+		delegate.create(name, currency, treasury);
+		Integer id;
+		try {
+			id = delegate.find(name).getId();
+		} catch (AccountNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+		afterCommit(() -> ownership.announce(id, name));
+	}
+
+	@Override
+	public Account find(String name) throws AccountNotFoundException {
+		return delegate.find(name);
+	}
+
+	@Override
+	public AccountView findView(String name) throws AccountNotFoundException {
+		long term = cache == null ? 0 : ownership.leaseTerm(ownership.partitionOf(name));
+		if (term == 0) {
+			return delegate.findView(name);
+		}
+
+		AccountView view = cache.get(name, term);
+		if (view == null) {
+			long generation = cache.generation();
+			view = delegate.findView(name);
+			cache.put(name, view, term, generation);
+		}
+		return view;
+	}
+
+	@Override
+	public List<AccountView> findViews(Collection<String> names) {
+		return delegate.findViews(names);
+	}
+
+	@Override
+	public List<AccountSummary> search(String prefix, int limit) {
+		return delegate.search(prefix, limit);
+	}
+
+	@Override
+	public void deposit(String accountName, Double amount) throws AccountNotFoundException {
+		delegate.deposit(accountName, amount);
+		changed(accountName);
+	}
+
+	@Override
+	public void withdraw(String accountName, Double amount) throws NegativeBalanceException, AccountNotFoundException {
+		delegate.withdraw(accountName, amount);
+		changed(accountName);
+	}
+
+	@Override
+	public void transfer(String accountFrom, String accountTo, Double amount)
+			throws NegativeBalanceException, AccountNotFoundException {
+		delegate.transfer(accountFrom, accountTo, amount);
+		changed(accountFrom, accountTo);
+	}
+
+	private void changed(String... names) {
+		if (cache != null) {
+			afterCommit(() -> evict(names));
+		}
+	}
+
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+
+		});
+	}
+
+	private void evict(String... names) {
+		for (String name : names) {
+			cache.evict(name);
+			ownership.invalidate(name);
+		}
+	}
+
+}
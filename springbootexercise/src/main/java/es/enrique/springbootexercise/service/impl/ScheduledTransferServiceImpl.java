@@ -0,0 +1,268 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.enrique.springbootexercise.dao.ScheduledTransferRepository;
+import es.enrique.springbootexercise.model.ScheduledTransfer;
+import es.enrique.springbootexercise.model.ScheduledTransfer.Status;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.NegativeBalanceException;
+import es.enrique.springbootexercise.service.ScheduledTransferNotFoundException;
+import es.enrique.springbootexercise.service.ScheduledTransferService;
+
+/**
+ * Implementation of {@link ScheduledTransferService} backed by a
+ * {@link HierarchicalTimerWheel}.
+ *
+ * Only the id and due time of the pending transfers are kept in memory. They
+ * are loaded once at startup and the table is never polled afterwards. On every
+ * tick the transfers that came due are split in batches handed to the workers.
+ * Each execution runs through {@link AccountService#transfer} in its own
+ * transaction along with the update of the transfer, so the account locks are
+ * released as soon as it's done.
+ *
+ * A transfer that can't be made because of its accounts, a missing one or a
+ * balance that would go negative, records the error; one-off transfers end
+ * there while standing orders stay scheduled. A transfer that loses a lock or
+ * times out against live operations is retried on the next tick, and one that
+ * fails for any other reason is marked as failed.
+ *
+ * Transfers that came due while the application was down run right after
+ * startup. Standing orders that missed several executions run all of them
+ * within the same tick, or only the latest one, as set by
+ * {@code accounts.scheduling.catch-up}.
+ *
+ * With sharded storage the shards commit on their own, before the update of
+ * the transfer. A transfer whose update fails after that is made again when
+ * retried, so each execution happens exactly once only with the single
+ * database.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+public class ScheduledTransferServiceImpl implements ScheduledTransferService {
+
+	public enum CatchUp {
+		ALL, LATEST
+	}
+
+	@Autowired
+	ScheduledTransferRepository repository;
+
+	@Autowired
+	AccountService accountService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Value("${accounts.scheduling.tick:1000}")
+	long tickMillis;
+
+	@Value("${accounts.scheduling.batch-size:500}")
+	int batchSize;
+
+	@Value("${accounts.scheduling.workers:4}")
+	int workers;
+
+	@Value("${accounts.scheduling.catch-up:ALL}")
+	CatchUp catchUp;
+
+	private HierarchicalTimerWheel wheel;
+	private TransactionTemplate transactions;
+	private ScheduledExecutorService ticker;
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void init() {
+		wheel = new HierarchicalTimerWheel(tickMillis, System.currentTimeMillis());
+		transactions = new TransactionTemplate(transactionManager);
+		ticker = Executors.newSingleThreadScheduledExecutor();
+		executor = Executors.newFixedThreadPool(workers);
+	}
+
+	/**
+	 * Loads the pending transfers into the wheel and starts ticking.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		synchronized (wheel) {
+			jdbcTemplate.query("SELECT id, execute_at FROM scheduled_transfers WHERE status = 'PENDING'",
+					rs -> {
+						wheel.schedule(rs.getLong(1), rs.getTimestamp(2).getTime());
+					});
+		}
+		ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		ticker.shutdownNow();
+		executor.shutdown();
+	}
+
+	@Override
+	public ScheduledTransfer schedule(String nameAccountFrom, String nameAccountTo, Double money, Instant executeAt,
+			Long repeatSeconds) throws AccountNotFoundException {
+		accountService.findView(nameAccountFrom);
+		accountService.findView(nameAccountTo);
+
+		ScheduledTransfer transfer = repository
+				.save(new ScheduledTransfer(nameAccountFrom, nameAccountTo, money, executeAt, repeatSeconds));
+		synchronized (wheel) {
+			wheel.schedule(transfer.getId(), executeAt.toEpochMilli());
+		}
+		return transfer;
+	}
+
+	@Override
+	// Scheduled transfers aren't replicated, keep the lookup on the primary.
+	@Transactional
+	public ScheduledTransfer find(Long id) throws ScheduledTransferNotFoundException {
+		return repository.findById(id).orElseThrow(ScheduledTransferNotFoundException::new);
+	}
+
+	/**
+	 * Expires the transfers that came due and hands them to the workers in
+	 * batches.
+	 */
+	private void tick() {
+		LongStream.Builder due = LongStream.builder();
+		synchronized (wheel) {
+			wheel.advanceTo(System.currentTimeMillis(), due::add);
+		}
+		// A transfer scheduled while the pending ones were loading may be twice.
+		long[] ids = due.build().sorted().distinct().toArray();
+		for (int from = 0; from < ids.length; from += batchSize) {
+			List<Long> batch = Arrays.stream(ids, from, Math.min(from + batchSize, ids.length)).boxed()
+					.collect(Collectors.toList());
+			executor.execute(() -> executeBatch(batch));
+		}
+	}
+
+	private void executeBatch(List<Long> ids) {
+		for (Long id : ids) {
+			executeDue(id);
+		}
+	}
+
+	/**
+	 * Runs every execution of a transfer that is due, each one in its own
+	 * transaction, and puts it back in the wheel for the next one.
+	 */
+	private void executeDue(Long id) {
+		ScheduledTransfer transfer;
+		do {
+			try {
+				transfer = transactions.execute(status -> {
+					ScheduledTransfer locked = repository.findByIdForUpdate(id);
+					if (locked != null) {
+						execute(locked, Instant.now());
+					}
+					return locked;
+				});
+			} catch (TransientDataAccessException e) {
+				// Lost a lock or timed out against live operations, retry on the next tick.
+				reschedule(id, System.currentTimeMillis());
+				return;
+			} catch (RuntimeException e) {
+				fail(id, e);
+				return;
+			}
+		} while (transfer != null && transfer.getStatus() == Status.PENDING
+				&& !transfer.getExecuteAt().isAfter(Instant.now()));
+
+		if (transfer != null && transfer.getStatus() == Status.PENDING) {
+			reschedule(id, transfer.getExecuteAt().toEpochMilli());
+		}
+	}
+
+	/**
+	 * Records a transfer as failed after its transaction was rolled back.
+	 */
+	private void fail(Long id, RuntimeException cause) {
+		try {
+			transactions.execute(status -> {
+				ScheduledTransfer transfer = repository.findByIdForUpdate(id);
+				if (transfer != null) {
+					transfer.setStatus(Status.FAILED);
+					transfer.setLastError(cause.getMessage());
+				}
+				return null;
+			});
+		} catch (RuntimeException ignored) {
+			// Still pending on the database, it will be retried on the next startup.
+		}
+	}
+
+	/**
+	 * Executes a transfer if it's due and moves it to its next state. Joins the
+	 * transaction of the caller, so the transfer and its new state are committed
+	 * together.
+	 */
+	private void execute(ScheduledTransfer transfer, Instant now) {
+		if (transfer.getStatus() != Status.PENDING || transfer.getExecuteAt().isAfter(now)) {
+			return;
+		}
+
+		String error = null;
+		try {
+			accountService.transfer(transfer.getAccountFrom(), transfer.getAccountTo(), transfer.getMoney());
+		} catch (AccountNotFoundException | NegativeBalanceException e) {
+			error = e.getMessage();
+		}
+		transfer.setExecutions(transfer.getExecutions() + 1);
+		transfer.setLastError(error);
+
+		if (transfer.getRepeatSeconds() == null) {
+			transfer.setStatus(error == null ? Status.DONE : Status.FAILED);
+		} else {
+			transfer.setExecuteAt(nextExecution(transfer, now));
+		}
+	}
+
+	private Instant nextExecution(ScheduledTransfer transfer, Instant now) {
+		long repeat = transfer.getRepeatSeconds();
+		Instant next = transfer.getExecuteAt().plusSeconds(repeat);
+		if (catchUp == CatchUp.LATEST && !next.isAfter(now)) {
+			// Skip the executions missed, the one just made stands for all of them.
+			long missed = Duration.between(next, now).getSeconds() / repeat + 1;
+			next = next.plusSeconds(missed * repeat);
+		}
+		return next;
+	}
+
+	private void reschedule(Long id, long dueMillis) {
+		synchronized (wheel) {
+			wheel.schedule(id, dueMillis);
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import es.enrique.springbootexercise.dao.AccountNameIndex;
+import es.enrique.springbootexercise.dao.sharding.AccountShard;
+import es.enrique.springbootexercise.dao.sharding.AccountShards;
+import es.enrique.springbootexercise.dao.sharding.TransferReservation;
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
+import es.enrique.springbootexercise.service.AccountAlreadyExistsException;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.NegativeBalanceException;
+
+/**
+ * Implementation of {@link AccountService} that partitions the accounts across
+ * several databases by the hash of their name.
+ *
+ * Transfers between accounts of the same shard run in a single local
+ * transaction. Transfers between shards use a reserve/commit protocol: the
+ * money is first taken from the sender and recorded as reserved, then credited
+ * to the receiver along with a receipt, and finally the reservation is marked as
+ * committed. If the receiver can't be credited the money is given back.
+ * Reservations left pending by a crash are settled periodically.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+@Qualifier(AccountService.STORAGE)
+@ConditionalOnProperty(name = "accounts.sharding.enabled", havingValue = "true")
+public class ShardedAccountServiceImpl implements AccountService {
+
+	private enum Outcome {
+		DONE, NOT_FOUND, NEGATIVE_BALANCE
+	}
+
+	private final AccountShards shards;
+	private final AccountNameIndex nameIndex;
+	private final long settleAfter;
+
+	// Set as well when built outside of Spring.
+	@Value("${accounts.lookup.chunk-size:500}")
+	private int lookupChunkSize = 500;
+
+	@Autowired
+	public ShardedAccountServiceImpl(AccountShards shards, AccountNameIndex nameIndex,
+			@Value("${accounts.sharding.settle-after:10000}") long settleAfter) {
+		this.shards = shards;
+		this.nameIndex = nameIndex;
+		this.settleAfter = settleAfter;
+	}
+
+	/**
+	 * Loads the names of the accounts of every shard into the name index.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadNameIndex() {
+		for (AccountShard shard : shards.getShards()) {
+			shard.forEachName(nameIndex::add);
+		}
+	}
+
+	@Override
+	public void create(String name, String currency, Boolean treasury) throws AccountAlreadyExistsException {
+		// Fail on unknown currencies like the entity does.
+		CurrencyUnit.of(currency);
+		try {
+			nameIndex.add(shards.shardFor(name).insert(name, currency, treasury), name);
+		} catch (DuplicateKeyException e) {
+			throw new AccountAlreadyExistsException();
+		}
+	}
+
+	@Override
+	public Account find(String name) throws AccountNotFoundException {
+		Account found = shards.shardFor(name).findByName(name);
+		if (found == null) {
+			throw new AccountNotFoundException();
+		}
+		return found;
+	}
+
+	@Override
+	public AccountView findView(String name) throws AccountNotFoundException {
+		AccountView found = shards.shardFor(name).findViewByName(name);
+		if (found == null) {
+			throw new AccountNotFoundException();
+		}
+		return found;
+	}
+
+	@Override
+	public List<AccountView> findViews(Collection<String> names) {
+		Map<AccountShard, List<String>> byShard = new HashMap<>();
+		for (String name : names) {
+			byShard.computeIfAbsent(shards.shardFor(name), shard -> new ArrayList<>()).add(name);
+		}
+
+		List<AccountView> found = new ArrayList<>(names.size());
+		for (Map.Entry<AccountShard, List<String>> shard : byShard.entrySet()) {
+			found.addAll(shard.getKey().findViewsByNames(shard.getValue(), lookupChunkSize));
+		}
+		return found;
+	}
+
+	@Override
+	public List<AccountSummary> search(String prefix, int limit) {
+		return nameIndex.search(prefix, limit);
+	}
+
+	@Override
+	public void deposit(String accountName, Double amount) throws AccountNotFoundException {
+		AccountShard shard = shards.shardFor(accountName);
+		BigDecimal money = BigDecimal.valueOf(amount);
+		Outcome outcome = shard.inTransaction(status -> {
+			Account account = shard.findByNameForUpdate(accountName);
+			if (account == null) {
+				return Outcome.NOT_FOUND;
+			}
+			checkScale(account, money);
+			shard.addMoney(accountName, money);
+			return Outcome.DONE;
+		});
+		if (outcome == Outcome.NOT_FOUND) {
+			throw new AccountNotFoundException();
+		}
+	}
+
+	@Override
+	public void withdraw(String accountName, Double amount) throws NegativeBalanceException, AccountNotFoundException {
+		AccountShard shard = shards.shardFor(accountName);
+		BigDecimal money = BigDecimal.valueOf(amount);
+		throwIfFailed(shard.inTransaction(status -> debit(shard, accountName, money)));
+	}
+
+	@Override
+	public void transfer(String accountFrom, String accountTo, Double amount)
+			throws NegativeBalanceException, AccountNotFoundException {
+		AccountShard from = shards.shardFor(accountFrom);
+		AccountShard to = shards.shardFor(accountTo);
+		BigDecimal money = BigDecimal.valueOf(amount);
+
+		Account receiver = to.findByName(accountTo);
+		if (receiver == null) {
+			throw new AccountNotFoundException();
+		}
+		checkScale(receiver, money);
+
+		if (from == to) {
+			throwIfFailed(from.inTransaction(status -> {
+				// Lock both rows in name order so concurrent transfers can't deadlock.
+				if (accountTo.compareTo(accountFrom) < 0 && from.findByNameForUpdate(accountTo) == null) {
+					return Outcome.NOT_FOUND;
+				}
+				Outcome debited = debit(from, accountFrom, money);
+				if (debited == Outcome.DONE && !from.addMoney(accountTo, money)) {
+					status.setRollbackOnly();
+					return Outcome.NOT_FOUND;
+				}
+				return debited;
+			}));
+			return;
+		}
+
+		// Phase 1: take the money from the sender and record it as reserved.
+		String transferId = UUID.randomUUID().toString();
+		throwIfFailed(from.inTransaction(status -> {
+			Outcome debited = debit(from, accountFrom, money);
+			if (debited == Outcome.DONE) {
+				from.insertReservation(transferId, accountFrom, accountTo, money);
+			}
+			return debited;
+		}));
+
+		// Phase 2: credit the receiver, or give the money back.
+		if (!settle(from, new TransferReservation(transferId, accountFrom, accountTo, money))) {
+			throw new AccountNotFoundException();
+		}
+	}
+
+	/**
+	 * Settles the cross-shard transfers left reserved for longer than
+	 * {@code accounts.sharding.settle-after} milliseconds, such as those
+	 * interrupted by a crash.
+	 */
+	@Scheduled(fixedDelayString = "${accounts.sharding.settle-after:10000}")
+	public void settlePendingTransfers() {
+		Timestamp before = new Timestamp(System.currentTimeMillis() - settleAfter);
+		for (AccountShard shard : shards.getShards()) {
+			for (TransferReservation reservation : shard.findReservedBefore(before)) {
+				settle(shard, reservation);
+			}
+		}
+	}
+
+	/**
+	 * Credits the receiver of a reserved transfer and commits the reservation. If
+	 * the receiver doesn't exist, the reservation is aborted and the money given
+	 * back to the sender. Safe to call more than once for the same transfer.
+	 *
+	 * @return true if the receiver was credited.
+	 */
+	private boolean settle(AccountShard from, TransferReservation reservation) {
+		AccountShard to = shards.shardFor(reservation.getAccountTo());
+		boolean credited;
+		try {
+			credited = to.inTransaction(status -> {
+				if (to.hasReceipt(reservation.getId())) {
+					return true;
+				}
+				if (!to.addMoney(reservation.getAccountTo(), reservation.getMoney())) {
+					return false;
+				}
+				to.insertReceipt(reservation.getId(), reservation.getAccountTo(), reservation.getMoney());
+				return true;
+			});
+		} catch (DuplicateKeyException e) {
+			// Credited concurrently by another settlement of the same transfer.
+			credited = true;
+		}
+
+		if (credited) {
+			from.resolveReservation(reservation.getId(), AccountShard.COMMITTED);
+		} else {
+			from.inTransaction(status -> {
+				if (from.resolveReservation(reservation.getId(), AccountShard.ABORTED)) {
+					from.addMoney(reservation.getAccountFrom(), reservation.getMoney());
+				}
+				return null;
+			});
+		}
+		return credited;
+	}
+
+	/**
+	 * Takes money from an account, locking its row. Must run in a transaction of
+	 * the shard.
+	 */
+	private Outcome debit(AccountShard shard, String accountName, BigDecimal money) {
+		Account account = shard.findByNameForUpdate(accountName);
+		if (account == null) {
+			return Outcome.NOT_FOUND;
+		}
+		checkScale(account, money);
+
+		if (!Boolean.TRUE.equals(account.getTreasury())
+				&& account.getMoney().getAmount().subtract(money).signum() < 0) {
+			// Non-treasury account would go negative, don't do the operation.
+			return Outcome.NEGATIVE_BALANCE;
+		}
+
+		shard.addMoney(accountName, money.negate());
+		return Outcome.DONE;
+	}
+
+	/**
+	 * Fails with an {@link ArithmeticException}, as the JPA storage does, when the
+	 * amount has more decimals than the currency of the account. Such a balance
+	 * couldn't be read back.
+	 */
+	private static void checkScale(Account account, BigDecimal money) {
+		Money.of(account.getCurrency(), money.stripTrailingZeros());
+	}
+
+	private void throwIfFailed(Outcome outcome) throws NegativeBalanceException, AccountNotFoundException {
+		if (outcome == Outcome.NOT_FOUND) {
+			throw new AccountNotFoundException();
+		}
+		if (outcome == Outcome.NEGATIVE_BALANCE) {
+			throw new NegativeBalanceException();
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import es.enrique.springbootexercise.dao.statistics.SqlStatistics;
+import es.enrique.springbootexercise.service.AccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Records the SQL statements, rows and database time of each
+ * {@link AccountService} method as metrics tagged by the method name.
+ *
+ * Runs outside the transaction, so the statements flushed on commit are
+ * counted too. Only the outermost call is recorded, so a service wrapping
+ * another one, such as the {@link OwnedAccountService} of cluster mode, doesn't
+ * count the same statements twice.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "accounts.sql.statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsAspect {
+
+	// Set while a call is recorded.
+	private static final ThreadLocal<Boolean> RECORDING = new ThreadLocal<>();
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Around("execution(* es.enrique.springbootexercise.service.AccountService.*(..))")
+	public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+		if (RECORDING.get() != null) {
+			return joinPoint.proceed();
+		}
+
+		SqlStatistics start = SqlStatistics.current().snapshot();
+		RECORDING.set(Boolean.TRUE);
+		try {
+			return joinPoint.proceed();
+		} finally {
+			RECORDING.remove();
+			SqlStatistics used = SqlStatistics.current().since(start);
+			String method = joinPoint.getSignature().getName();
+			registry.summary("accounts.sql.service.statements", "method", method).record(used.getStatements());
+			registry.summary("accounts.sql.service.rows", "method", method).record(used.getRows());
+			registry.timer("accounts.sql.service.time", "method", method).record(used.getNanos(),
+					TimeUnit.NANOSECONDS);
+		}
+	}
+
+}
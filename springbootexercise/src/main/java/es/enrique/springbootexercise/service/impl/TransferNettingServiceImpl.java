@@ -0,0 +1,253 @@
+package es.enrique.springbootexercise.service.impl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PreDestroy;
+
+import org.joda.money.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.enrique.springbootexercise.dao.AccountRepository;
+import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.BalanceHistoryService;
+import es.enrique.springbootexercise.service.NegativeBalanceException;
+import es.enrique.springbootexercise.service.TransferNettingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Implementation of {@link TransferNettingService} over the single database
+ * storage of {@link AccountServiceImpl}.
+ *
+ * Accepted transfers are accumulated per pair of accounts, so transfers going
+ * back and forth cancel each other out. Every {@code accounts.netting.window}
+ * milliseconds the net movement of each account is written in one transaction,
+ * with a single balance change recorded per account. Accounts whose transfers
+ * cancel out aren't written at all.
+ *
+ * Accepting a transfer locks the row of the sender without writing it, which
+ * serializes the worst-case check with the direct withdrawals and transfers of
+ * {@link AccountServiceImpl}, as they take the pending debits into account too.
+ *
+ * A window that loses a lock is kept for the next flush. If it fails for any
+ * other reason its transfers are written one by one, and those that still fail
+ * are dropped and counted in {@code accounts.netting.failed}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "accounts.netting.enabled", havingValue = "true")
+public class TransferNettingServiceImpl implements TransferNettingService {
+
+	/**
+	 * A transfer accepted, kept to be written on its own if its window can't.
+	 */
+	private static final class Transfer {
+
+		private final String accountFrom;
+		private final String accountTo;
+		private final BigDecimal amount;
+
+		private Transfer(String accountFrom, String accountTo, BigDecimal amount) {
+			this.accountFrom = accountFrom;
+			this.accountTo = accountTo;
+			this.amount = amount;
+		}
+
+	}
+
+	/**
+	 * Transfers accepted and not written yet.
+	 */
+	private static final class Window {
+
+		// Net amount sent from the first to the second name of each pair, in name
+		// order.
+		private final Map<String, BigDecimal> pairs = new HashMap<>();
+		private final Map<String, BigDecimal> debits = new HashMap<>();
+		private final List<Transfer> transfers = new ArrayList<>();
+
+		private void add(String accountFrom, String accountTo, BigDecimal amount) {
+			if (accountFrom.compareTo(accountTo) <= 0) {
+				pairs.merge(accountFrom + '\0' + accountTo, amount, BigDecimal::add);
+			} else {
+				pairs.merge(accountTo + '\0' + accountFrom, amount.negate(), BigDecimal::add);
+			}
+			debits.merge(accountFrom, amount, BigDecimal::add);
+			transfers.add(new Transfer(accountFrom, accountTo, amount));
+		}
+
+		private void addAll(Window other) {
+			other.pairs.forEach((pair, amount) -> pairs.merge(pair, amount, BigDecimal::add));
+			other.debits.forEach((name, amount) -> debits.merge(name, amount, BigDecimal::add));
+			transfers.addAll(other.transfers);
+		}
+
+		/**
+		 * @return the net amount added to each account, by name
+		 */
+		private Map<String, BigDecimal> deltas() {
+			Map<String, BigDecimal> deltas = new TreeMap<>();
+			pairs.forEach((pair, amount) -> {
+				int separator = pair.indexOf('\0');
+				deltas.merge(pair.substring(0, separator), amount.negate(), BigDecimal::add);
+				deltas.merge(pair.substring(separator + 1), amount, BigDecimal::add);
+			});
+			deltas.values().removeIf(delta -> delta.signum() == 0);
+			return deltas;
+		}
+
+	}
+
+	private final AccountRepository repository;
+	private final BalanceHistoryService history;
+	private final TransactionTemplate transactions;
+	private final Counter acceptedCounter;
+	private final Counter writtenCounter;
+	private final Counter failedCounter;
+	private final Object flushLock = new Object();
+
+	private Window open = new Window();
+	private Window flushing;
+
+	@Autowired
+	public TransferNettingServiceImpl(AccountRepository repository, BalanceHistoryService history,
+			PlatformTransactionManager transactionManager, MeterRegistry registry) {
+		this.repository = repository;
+		this.history = history;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.acceptedCounter = registry.counter("accounts.netting.transfers");
+		this.writtenCounter = registry.counter("accounts.netting.writes");
+		this.failedCounter = registry.counter("accounts.netting.failed");
+	}
+
+	@Override
+	@Transactional
+	public void transfer(String accountFrom, String accountTo, Double amount)
+			throws NegativeBalanceException, AccountNotFoundException {
+		Account sender = repository.findByNameForUpdate(accountFrom);
+		Account receiver = repository.findByName(accountTo);
+		if (sender == null || receiver == null) {
+			throw new AccountNotFoundException();
+		}
+
+		// Rejects amounts with more decimals than either currency has here, as they
+		// could never be written.
+		BigDecimal money = Money.of(sender.getCurrency(), amount).getAmount();
+		Money.of(receiver.getCurrency(), amount);
+		synchronized (this) {
+			if (!sender.getTreasury()) {
+				BigDecimal worstCase = sender.getMoney().getAmount().subtract(pendingDebits(accountFrom));
+				if (worstCase.compareTo(money) < 0) {
+					// Non-treasury account could go negative, don't accept the transfer.
+					throw new NegativeBalanceException();
+				}
+			}
+			open.add(accountFrom, accountTo, money);
+		}
+		acceptedCounter.increment();
+	}
+
+	@Override
+	public synchronized BigDecimal pendingDebits(String accountName) {
+		BigDecimal pending = open.debits.getOrDefault(accountName, BigDecimal.ZERO);
+		if (flushing != null) {
+			pending = pending.add(flushing.debits.getOrDefault(accountName, BigDecimal.ZERO));
+		}
+		return pending;
+	}
+
+	@Override
+	@Scheduled(fixedDelayString = "${accounts.netting.window:200}")
+	public void flush() {
+		synchronized (flushLock) {
+			Window window;
+			synchronized (this) {
+				if (open.transfers.isEmpty()) {
+					return;
+				}
+				window = open;
+				flushing = window;
+				open = new Window();
+			}
+
+			try {
+				write(window);
+			} catch (TransientDataAccessException e) {
+				// Nothing was written, keep the transfers for the next flush.
+				synchronized (this) {
+					window.addAll(open);
+					open = window;
+				}
+				throw e;
+			} catch (RuntimeException e) {
+				// One of the transfers can't be written, write them one by one so it
+				// doesn't hold back the others.
+				window.transfers.forEach(this::writeAlone);
+			} finally {
+				synchronized (this) {
+					// Only dropped once committed, so the debits are never missed.
+					flushing = null;
+				}
+			}
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		flush();
+	}
+
+	private void write(Window window) {
+		transactions.execute(status -> {
+			apply(window);
+			return null;
+		});
+	}
+
+	private void writeAlone(Transfer transfer) {
+		Window single = new Window();
+		single.add(transfer.accountFrom, transfer.accountTo, transfer.amount);
+		try {
+			write(single);
+		} catch (TransientDataAccessException e) {
+			synchronized (this) {
+				open.add(transfer.accountFrom, transfer.accountTo, transfer.amount);
+			}
+		} catch (RuntimeException e) {
+			// Can never be written, drop it.
+			failedCounter.increment();
+		}
+	}
+
+	private void apply(Window window) {
+		Map<String, BigDecimal> deltas = window.deltas();
+		if (deltas.isEmpty()) {
+			return;
+		}
+
+		List<Account> accounts = repository.findAllByNameForUpdate(deltas.keySet());
+		for (Account account : accounts) {
+			BigDecimal delta = deltas.get(account.getName());
+			account.setMoney(account.getMoney().plus(delta));
+			history.recordChange(account, delta.doubleValue());
+			repository.save(account);
+		}
+		writtenCounter.increment(accounts.size());
+	}
+
+}
@@ -1,3 +1,9 @@
+DROP TABLE IF EXISTS account_operations;
+DROP TABLE IF EXISTS sweep_chunks;
+DROP TABLE IF EXISTS sweeps;
+DROP TABLE IF EXISTS scheduled_transfers;
+DROP TABLE IF EXISTS balance_checkpoints;
+DROP TABLE IF EXISTS balance_changes;
 DROP TABLE IF EXISTS accounts;
 
 CREATE TABLE accounts (
@@ -5,5 +11,79 @@ CREATE TABLE accounts (
 	name VARCHAR(250) NOT NULL,
 	currency VARCHAR(10) NOT NULL,
 	money DECIMAL NOT NULL,
-	treasury BOOLEAN
-);
\ No newline at end of file
+	treasury BOOLEAN,
+	history_changes INT DEFAULT 0 NOT NULL
+);
+
+CREATE INDEX accounts_name ON accounts (name);
+
+-- Every change of the balance of an account.
+CREATE TABLE balance_changes (
+	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	account_id INT NOT NULL,
+	changed_at TIMESTAMP NOT NULL,
+	amount DECIMAL NOT NULL
+);
+
+CREATE INDEX balance_changes_account ON balance_changes (account_id, id);
+
+-- Balance of an account after a change, taken every few changes.
+CREATE TABLE balance_checkpoints (
+	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	account_id INT NOT NULL,
+	taken_at TIMESTAMP NOT NULL,
+	money DECIMAL NOT NULL,
+	change_id BIGINT NOT NULL
+);
+
+CREATE INDEX balance_checkpoints_account ON balance_checkpoints (account_id, taken_at);
+
+-- Transfers to be executed later, once or every repeat_seconds.
+CREATE TABLE scheduled_transfers (
+	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	account_from VARCHAR(250) NOT NULL,
+	account_to VARCHAR(250) NOT NULL,
+	money DECIMAL NOT NULL,
+	execute_at TIMESTAMP NOT NULL,
+	repeat_seconds BIGINT,
+	status VARCHAR(10) NOT NULL,
+	executions INT DEFAULT 0 NOT NULL,
+	last_error VARCHAR(250)
+);
+
+CREATE INDEX scheduled_transfers_status ON scheduled_transfers (status);
+
+-- Interest and fee sweeps, with the rates and the id range they run with.
+CREATE TABLE sweeps (
+	id VARCHAR(50) PRIMARY KEY,
+	interest_rate DECIMAL NOT NULL,
+	fee DECIMAL NOT NULL,
+	max_account_id INT NOT NULL,
+	chunk_size INT NOT NULL,
+	started_at TIMESTAMP NOT NULL,
+	finished_at TIMESTAMP
+);
+
+-- Chunks of accounts already swept, so an interrupted sweep resumes.
+CREATE TABLE sweep_chunks (
+	sweep_id VARCHAR(50) NOT NULL,
+	first_account_id INT NOT NULL,
+	accounts INT NOT NULL,
+	done_at TIMESTAMP NOT NULL,
+	PRIMARY KEY (sweep_id, first_account_id)
+);
+
+-- Deposits, withdrawals and transfers accepted to be applied asynchronously.
+CREATE TABLE account_operations (
+	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	type VARCHAR(10) NOT NULL,
+	account_from VARCHAR(250) NOT NULL,
+	account_to VARCHAR(250),
+	money DECIMAL NOT NULL,
+	status VARCHAR(10) NOT NULL,
+	error VARCHAR(250),
+	accepted_at TIMESTAMP NOT NULL,
+	applied_at TIMESTAMP
+);
+
+CREATE INDEX account_operations_status ON account_operations (status);
@@ -0,0 +1,28 @@
+DROP TABLE IF EXISTS transfer_receipts;
+DROP TABLE IF EXISTS transfer_reservations;
+DROP TABLE IF EXISTS accounts;
+
+CREATE TABLE accounts (
+	id INT AUTO_INCREMENT PRIMARY KEY,
+	name VARCHAR(250) NOT NULL UNIQUE,
+	currency VARCHAR(10) NOT NULL,
+	money DECIMAL NOT NULL,
+	treasury BOOLEAN
+);
+
+-- Money taken from an account of this shard for a transfer to another shard.
+CREATE TABLE transfer_reservations (
+	id VARCHAR(36) PRIMARY KEY,
+	account_from VARCHAR(250) NOT NULL,
+	account_to VARCHAR(250) NOT NULL,
+	money DECIMAL NOT NULL,
+	status VARCHAR(10) NOT NULL,
+	created_at TIMESTAMP NOT NULL
+);
+
+-- Transfers from other shards already credited to an account of this shard.
+CREATE TABLE transfer_receipts (
+	id VARCHAR(36) PRIMARY KEY,
+	account_to VARCHAR(250) NOT NULL,
+	money DECIMAL NOT NULL
+);
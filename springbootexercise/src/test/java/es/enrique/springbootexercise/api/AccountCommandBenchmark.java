@@ -0,0 +1,129 @@
+package es.enrique.springbootexercise.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import es.enrique.springbootexercise.service.AccountService;
+
+/**
+ * Compares the throughput of deposits made through the REST endpoint, one
+ * request at a time per client, with the same deposits pipelined through the
+ * {@code /commands} channel. Run with {@code mvn test -Pbenchmark}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class AccountCommandBenchmark {
+
+	private static final int CLIENTS = 8;
+	private static final int ACCOUNTS = 100;
+	private static final int OPERATIONS = 20_000;
+	private static final int MAX_IN_FLIGHT = 256;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private AccountService service;
+
+	/**
+	 * Runs the same deposits through both channels and checks none was lost.
+	 */
+	@Test
+	void benchmark_restVersusCommandChannel() throws Exception {
+		for (int i = 0; i < ACCOUNTS; i++) {
+			service.create("Benchmark " + i, "EUR", false);
+		}
+
+		double restSeconds = run(this::depositThroughRest);
+		double channelSeconds = run(this::depositThroughChannel);
+
+		System.out.printf("REST: %.0f deposits/s%n", OPERATIONS / restSeconds);
+		System.out.printf("Command channel: %.0f deposits/s%n", OPERATIONS / channelSeconds);
+		double total = 0;
+		for (int i = 0; i < ACCOUNTS; i++) {
+			total += service.find("Benchmark " + i).getMoney().getAmount().doubleValue();
+		}
+		assertEquals(2.0 * OPERATIONS, total);
+	}
+
+	private interface Client {
+		void deposit(int client, int operations) throws Exception;
+	}
+
+	private double run(Client client) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+		List<Callable<Void>> clients = new ArrayList<>();
+		for (int c = 0; c < CLIENTS; c++) {
+			int clientNumber = c;
+			clients.add(() -> {
+				client.deposit(clientNumber, OPERATIONS / CLIENTS);
+				return null;
+			});
+		}
+
+		long start = System.nanoTime();
+		for (Future<Void> result : executor.invokeAll(clients)) {
+			result.get();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		executor.shutdown();
+		return seconds;
+	}
+
+	private void depositThroughRest(int client, int operations) {
+		for (int i = 0; i < operations; i++) {
+			String name = "Benchmark " + (client * operations + i) % ACCOUNTS;
+			HttpStatus status = restTemplate
+					.postForEntity("/deposit?name={name}&money=1.0", null, String.class, name).getStatusCode();
+			assertEquals(HttpStatus.OK, status);
+		}
+	}
+
+	private void depositThroughChannel(int client, int operations) throws Exception {
+		CountDownLatch done = new CountDownLatch(operations);
+		Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		WebSocketSession session = new StandardWebSocketClient().doHandshake(new TextWebSocketHandler() {
+			@Override
+			protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+				inFlight.release();
+				done.countDown();
+			}
+		}, "ws://localhost:" + port + "/commands").get(5, TimeUnit.SECONDS);
+
+		for (int i = 0; i < operations; i++) {
+			String name = "Benchmark " + (client * operations + i) % ACCOUNTS;
+			inFlight.acquire();
+			session.sendMessage(new TextMessage(
+					"{\"id\":\"" + i + "\",\"op\":\"deposit\",\"name\":\"" + name + "\",\"money\":1.0}"));
+		}
+		done.await();
+		session.close();
+	}
+
+}
@@ -0,0 +1,147 @@
+package es.enrique.springbootexercise.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.enrique.springbootexercise.service.AccountService;
+
+/**
+ * Test cases for the {@code /commands} WebSocket channel, through a real
+ * connection.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class AccountCommandHandlerTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	private final BlockingQueue<String> results = new LinkedBlockingQueue<>();
+	private WebSocketSession session;
+
+	@BeforeEach
+	void connect() throws Exception {
+		session = new StandardWebSocketClient().doHandshake(new TextWebSocketHandler() {
+			@Override
+			protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+				results.add(message.getPayload());
+			}
+		}, "ws://localhost:" + port + "/commands").get(5, TimeUnit.SECONDS);
+	}
+
+	@AfterEach
+	void close() throws Exception {
+		session.close();
+	}
+
+	/**
+	 * Asserts that pipelined commands get each their own result, matched by
+	 * correlation id.
+	 */
+	@Test
+	void test_pipelinedCommands() throws Exception {
+		service.create("Command 1", "EUR", false);
+		service.create("Command 2", "EUR", false);
+		service.deposit("Command 1", 100.0);
+
+		send("{\"id\":\"1\",\"op\":\"deposit\",\"name\":\"Command 2\",\"money\":10.0}");
+		send("{\"id\":\"2\",\"op\":\"transfer\",\"nameAccountFrom\":\"Command 1\",\"nameAccountTo\":\"Command 2\",\"money\":30.0}");
+		send("{\"id\":\"3\",\"op\":\"withdraw\",\"name\":\"Command 2\",\"money\":1000.0}");
+		send("{\"id\":\"4\",\"op\":\"deposit\",\"name\":\"Non existing account\",\"money\":10.0}");
+		send("{\"id\":\"5\",\"op\":\"explode\"}");
+		send("{\"id\":\"6\",\"op\":\"deposit\",\"name\":\"Command 2\"}");
+
+		Map<String, JsonNode> byId = receive(6);
+		assertEquals(200, byId.get("1").get("status").asInt());
+		assertEquals(200, byId.get("2").get("status").asInt());
+		assertEquals(70.0, byId.get("2").get("account").get("moneyDouble").asDouble());
+		assertEquals(400, byId.get("3").get("status").asInt());
+		assertEquals(404, byId.get("4").get("status").asInt());
+		assertEquals(400, byId.get("5").get("status").asInt());
+		assertEquals(400, byId.get("6").get("status").asInt());
+		assertEquals(40.0, service.find("Command 2").getMoney().getAmount().doubleValue());
+	}
+
+	/**
+	 * Asserts that pipelined commands on the same account run in the order they
+	 * were sent.
+	 */
+	@Test
+	void test_sameAccountInOrder() throws Exception {
+		service.create("Command 4", "EUR", false);
+		service.create("Command 5", "EUR", false);
+
+		for (int i = 0; i < 50; i++) {
+			send("{\"id\":\"d" + i + "\",\"op\":\"deposit\",\"name\":\"Command 4\",\"money\":10.0}");
+			send("{\"id\":\"t" + i
+					+ "\",\"op\":\"transfer\",\"nameAccountFrom\":\"Command 4\",\"nameAccountTo\":\"Command 5\",\"money\":10.0}");
+			send("{\"id\":\"w" + i + "\",\"op\":\"withdraw\",\"name\":\"Command 5\",\"money\":10.0}");
+		}
+
+		Map<String, JsonNode> byId = receive(150);
+		byId.forEach((id, result) -> assertEquals(200, result.get("status").asInt(), id));
+		assertEquals(0.0, service.find("Command 4").getMoney().getAmount().doubleValue());
+		assertEquals(0.0, service.find("Command 5").getMoney().getAmount().doubleValue());
+	}
+
+	/**
+	 * Asserts that a malformed command is answered without closing the channel.
+	 */
+	@Test
+	void test_malformedCommand() throws Exception {
+		service.create("Command 3", "EUR", false);
+
+		send("not json");
+		send("{\"id\":\"1\",\"op\":\"find\",\"name\":\"Command 3\"}");
+
+		JsonNode malformed = mapper.readTree(results.poll(5, TimeUnit.SECONDS));
+		assertEquals(400, malformed.get("status").asInt());
+		JsonNode found = mapper.readTree(results.poll(5, TimeUnit.SECONDS));
+		assertEquals("Command 3", found.get("account").get("name").asText());
+	}
+
+	private void send(String command) throws Exception {
+		session.sendMessage(new TextMessage(command));
+	}
+
+	private Map<String, JsonNode> receive(int count) throws Exception {
+		Map<String, JsonNode> byId = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			String result = results.poll(5, TimeUnit.SECONDS);
+			assertNotNull(result, "Timed out waiting for the results");
+			JsonNode node = mapper.readTree(result);
+			byId.put(node.get("id").asText(), node);
+		}
+		return byId;
+	}
+
+}
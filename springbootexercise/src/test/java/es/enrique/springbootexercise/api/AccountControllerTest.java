@@ -1 +1,81 @@
+package es.enrique.springbootexercise.api;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.enrique.springbootexercise.service.AccountService;
+
+/**
+ * Test cases for the lookup of several accounts at once.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:controller", "accounts.lookup.chunk-size=2" })
+@AutoConfigureMockMvc
+class AccountControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	/**
+	 * Asserts that the accounts are returned once each in the order their names
+	 * were given, followed by the names of the accounts that don't exist.
+	 */
+	@Test
+	void test_lookup() throws Exception {
+		service.create("Lookup 1", "EUR", false);
+		service.create("Lookup 2", "EUR", false);
+		service.create("Lookup 3", "EUR", false);
+
+		lookup(Arrays.asList("Lookup 3", "Lookup missing", "Lookup 1", "Lookup 3", "Lookup missing", "Lookup 2"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.accounts.length()").value(3))
+				.andExpect(jsonPath("$.accounts[0].name").value("Lookup 3"))
+				.andExpect(jsonPath("$.accounts[1].name").value("Lookup 1"))
+				.andExpect(jsonPath("$.accounts[2].name").value("Lookup 2"))
+				.andExpect(jsonPath("$.missing.length()").value(1))
+				.andExpect(jsonPath("$.missing[0]").value("Lookup missing"));
+	}
+
+	/**
+	 * Asserts that a lookup of more than 10000 names is rejected.
+	 */
+	@Test
+	void test_lookupTooManyNames() throws Exception {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			names.add("Lookup " + i);
+		}
+		lookup(names).andExpect(status().isOk());
+
+		names.add("Lookup 10000");
+		lookup(names).andExpect(status().isBadRequest());
+	}
+
+	private ResultActions lookup(List<String> names) throws Exception {
+		return mvc.perform(post("/accounts/lookup").contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsString(names)));
+	}
+
+}
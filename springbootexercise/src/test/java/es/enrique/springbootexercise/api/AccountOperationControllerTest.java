@@ -0,0 +1,154 @@
+package es.enrique.springbootexercise.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import es.enrique.springbootexercise.dao.AccountOperationRepository;
+import es.enrique.springbootexercise.model.AccountOperation;
+import es.enrique.springbootexercise.model.AccountOperation.Status;
+import es.enrique.springbootexercise.model.AccountOperation.Type;
+import es.enrique.springbootexercise.service.AccountOperationService;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.impl.AccountOperationServiceImpl;
+
+/**
+ * Test cases for the asynchronous writes. There are 2 lanes, so the accounts
+ * of a transfer often fall on different lanes.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:async", "accounts.async.enabled=true",
+		"accounts.async.lanes=2" })
+@AutoConfigureMockMvc
+class AccountOperationControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private AccountOperationService operations;
+
+	@Autowired
+	private AccountOperationRepository repository;
+
+	/**
+	 * Asserts that a withdrawal is answered with 202 and the location of the
+	 * operation, and that waiting on it returns its outcome.
+	 */
+	@Test
+	void test_acceptedThenApplied() throws Exception {
+		service.create("Async 1", "EUR", false);
+		service.deposit("Async 1", 100.0);
+
+		MvcResult accepted = mvc.perform(post("/withdraw").param("name", "Async 1").param("money", "40.0"))
+				.andExpect(status().isAccepted()).andReturn();
+		String location = accepted.getResponse().getHeader(HttpHeaders.LOCATION);
+		assertNotNull(location);
+
+		poll(get(location).param("wait", "5")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("DONE"));
+		assertEquals(60.0, service.findView("Async 1").getMoneyDouble());
+
+		poll(get("/operations/{id}", Long.MAX_VALUE)).andExpect(status().isNotFound());
+		poll(get(location).param("wait", "31")).andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Asserts that the operations on an account are applied in the order they were
+	 * accepted, also when they come from transfers, and that a failed one records
+	 * why.
+	 */
+	@Test
+	void test_ordered() throws Exception {
+		service.create("Async 2", "EUR", false);
+		service.create("Async 3", "EUR", false);
+
+		operations.submit(Type.DEPOSIT, "Async 2", null, 100.0);
+		operations.submit(Type.TRANSFER, "Async 2", "Async 3", 60.0);
+		AccountOperation received = operations.submit(Type.WITHDRAW, "Async 3", null, 50.0);
+		AccountOperation overdrawn = operations.submit(Type.WITHDRAW, "Async 2", null, 50.0);
+
+		assertEquals(Status.DONE,
+				operations.completion(received.getId()).get(5, TimeUnit.SECONDS).getStatus());
+		AccountOperation failed = operations.completion(overdrawn.getId()).get(5, TimeUnit.SECONDS);
+		assertEquals(Status.FAILED, failed.getStatus());
+		assertNotNull(failed.getError());
+
+		assertEquals(40.0, service.findView("Async 2").getMoneyDouble());
+		assertEquals(10.0, service.findView("Async 3").getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that an operation left pending by a previous run is applied by the
+	 * recovery.
+	 */
+	@Test
+	void test_recovered() throws Exception {
+		service.create("Async 4", "EUR", false);
+		AccountOperation pending = repository.save(new AccountOperation(Type.DEPOSIT, "Async 4", null, 30.0));
+
+		((AccountOperationServiceImpl) operations).recover();
+		assertEquals(Status.DONE, operations.completion(pending.getId()).get(5, TimeUnit.SECONDS).getStatus());
+		assertEquals(30.0, service.findView("Async 4").getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that a wait that times out stops waiting on the operation.
+	 */
+	@Test
+	void test_waitTimedOut() throws Exception {
+		service.create("Async 5", "EUR", false);
+		// Not queued, so it stays pending.
+		AccountOperation pending = repository.save(new AccountOperation(Type.DEPOSIT, "Async 5", null, 30.0));
+
+		MvcResult waiting = mvc.perform(get("/operations/{id}", pending.getId()).param("wait", "1"))
+				.andExpect(request().asyncStarted()).andReturn();
+		AccountOperationServiceImpl impl = (AccountOperationServiceImpl) operations;
+		assertEquals(1, impl.waiting());
+
+		MockAsyncContext context = (MockAsyncContext) waiting.getRequest().getAsyncContext();
+		for (AsyncListener listener : context.getListeners()) {
+			listener.onTimeout(new AsyncEvent(context));
+		}
+		assertEquals(HttpStatus.OK, ((ResponseEntity<?>) waiting.getAsyncResult()).getStatusCode());
+		assertEquals(0, impl.waiting());
+	}
+
+	/**
+	 * Performs a request answered with a deferred result and dispatches its
+	 * result.
+	 */
+	private ResultActions poll(MockHttpServletRequestBuilder builder) throws Exception {
+		MvcResult result = mvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+		return mvc.perform(asyncDispatch(result));
+	}
+
+}
@@ -0,0 +1,295 @@
+package es.enrique.springbootexercise.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import es.enrique.springbootexercise.SpringbootexerciseApplication;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountOwnershipService;
+import es.enrique.springbootexercise.service.AccountService;
+import es.enrique.springbootexercise.service.AccountSweepService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Test cases for cluster mode, running two nodes in this JVM over the same
+ * database. The first one redirects requests for accounts it doesn't own and
+ * the second one proxies them. Writes are asynchronous, so proxied writes
+ * answer with the location of the operation on the owner.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@TestMethodOrder(OrderAnnotation.class)
+class AccountOwnershipInterceptorTest {
+
+	private static ConfigurableApplicationContext redirecting;
+	private static ConfigurableApplicationContext proxying;
+	private static RestTemplate rest;
+
+	@BeforeAll
+	static void startNodes() throws Exception {
+		redirecting = startNode("REDIRECT");
+		proxying = startNode("PROXY");
+
+		rest = new RestTemplate(new SimpleClientHttpRequestFactory() {
+			@Override
+			protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+				super.prepareConnection(connection, httpMethod);
+				connection.setInstanceFollowRedirects(false);
+			}
+		});
+		rest.setErrorHandler(new DefaultResponseErrorHandler() {
+			@Override
+			protected boolean hasError(HttpStatus statusCode) {
+				return false;
+			}
+		});
+
+		// Wait for the first node to hand partitions over to the second one.
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!handedOver()) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("The nodes didn't split the partitions");
+			}
+			Thread.sleep(50);
+		}
+		Thread.sleep(500);
+	}
+
+	private static boolean handedOver() {
+		for (int i = 0; i < 100; i++) {
+			if (url(proxying).equals(ownership(redirecting).ownerOf("Cluster wait " + i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@AfterAll
+	static void stopNodes() {
+		if (proxying != null) {
+			proxying.close();
+		}
+		if (redirecting != null) {
+			redirecting.close();
+		}
+	}
+
+	private static ConfigurableApplicationContext startNode(String forward) {
+		// Passed as arguments, as default properties don't override application.properties.
+		return new SpringApplicationBuilder(SpringbootexerciseApplication.class).run("--server.port=0",
+				"--spring.datasource.url=jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1", "--accounts.cluster.enabled=true",
+				"--accounts.cluster.lease-ttl=1000", "--accounts.cluster.renew-interval=100",
+				"--accounts.cluster.forward=" + forward, "--accounts.async.enabled=true");
+	}
+
+	private static AccountOwnershipService ownership(ConfigurableApplicationContext node) {
+		return node.getBean(AccountOwnershipService.class);
+	}
+
+	private static AccountService service(ConfigurableApplicationContext node) {
+		return node.getBean(AccountService.class);
+	}
+
+	private static AccountView findView(String name) {
+		try {
+			return service(redirecting).findView(name);
+		} catch (AccountNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String url(ConfigurableApplicationContext node) {
+		return ownership(node).getNodeUrl();
+	}
+
+	/**
+	 * Returns an account name starting with the given prefix owned by the given
+	 * node.
+	 */
+	private static String nameOwnedBy(String prefix, ConfigurableApplicationContext node) {
+		for (int i = 0;; i++) {
+			String name = prefix + " " + i;
+			if (ownership(node).ownerOf(name) == null) {
+				return name;
+			}
+		}
+	}
+
+	/**
+	 * Asserts that a request for an account of the other node is redirected to
+	 * it, and that the owner serves it.
+	 */
+	@Test
+	@Order(1)
+	void test_redirectToOwner() throws Exception {
+		String name = nameOwnedBy("Redirected", proxying);
+		service(proxying).create(name, "EUR", false);
+
+		ResponseEntity<String> redirected = rest.getForEntity(url(redirecting) + "/find?name={name}", String.class,
+				name);
+		assertEquals(HttpStatus.TEMPORARY_REDIRECT, redirected.getStatusCode());
+		assertTrue(redirected.getHeaders().getLocation().toString().startsWith(url(proxying) + "/find?"));
+
+		ResponseEntity<String> found = rest.getForEntity(redirected.getHeaders().getLocation(), String.class);
+		assertEquals(HttpStatus.OK, found.getStatusCode());
+	}
+
+	/**
+	 * Asserts that a request for an account of the other node is proxied to it,
+	 * status, headers and body included.
+	 */
+	@Test
+	@Order(2)
+	void test_proxyToOwner() throws Exception {
+		String name = nameOwnedBy("Proxied", redirecting);
+		service(redirecting).create(name, "EUR", false);
+		service(redirecting).deposit(name, 25.0);
+
+		ResponseEntity<String> withdrawn = rest.postForEntity(url(proxying) + "/withdraw?name={name}&money=10.0", null,
+				String.class, name);
+		assertEquals(HttpStatus.ACCEPTED, withdrawn.getStatusCode());
+		URI operation = withdrawn.getHeaders().getLocation();
+		assertTrue(operation.toString().startsWith(url(redirecting) + "/operations/"));
+
+		ResponseEntity<String> applied = rest.getForEntity(operation + "?wait=5", String.class);
+		assertEquals(HttpStatus.OK, applied.getStatusCode());
+		assertTrue(applied.getBody().contains("\"status\":\"DONE\""));
+		assertEquals(15.0, service(redirecting).findView(name).getMoneyDouble());
+
+		ResponseEntity<String> missing = rest.getForEntity(url(proxying) + "/find?name={name}", String.class,
+				nameOwnedBy("Proxied missing", redirecting));
+		assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+	}
+
+	/**
+	 * Asserts that the view the owner keeps in memory is evicted when the other
+	 * node changes the account.
+	 */
+	@Test
+	@Order(3)
+	void test_invalidatedByOtherNode() throws Exception {
+		String owned = nameOwnedBy("Cached", redirecting);
+		String other = nameOwnedBy("Cached", proxying);
+		service(redirecting).create(owned, "EUR", false);
+		service(redirecting).create(other, "EUR", false);
+		service(redirecting).deposit(other, 100.0);
+
+		assertEquals(0.0, service(redirecting).findView(owned).getMoneyDouble());
+		service(proxying).transfer(other, owned, 40.0);
+		assertEquals(40.0, service(redirecting).findView(owned).getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that a view loaded while a write is not committed yet is not kept
+	 * once it is.
+	 */
+	@Test
+	@Order(4)
+	void test_evictedOnCommit() throws Exception {
+		String owned = nameOwnedBy("Committed", redirecting);
+		service(redirecting).create(owned, "EUR", false);
+
+		new TransactionTemplate(redirecting.getBean(PlatformTransactionManager.class)).execute(status -> {
+			try {
+				service(redirecting).deposit(owned, 10.0);
+				// Loaded from another thread before the deposit commits.
+				CompletableFuture.supplyAsync(() -> findView(owned)).join();
+			} catch (AccountNotFoundException e) {
+				throw new IllegalStateException(e);
+			}
+			return null;
+		});
+		assertEquals(10.0, service(redirecting).findView(owned).getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that a sweep run on one node clears the views the other node
+	 * keeps in memory.
+	 */
+	@Test
+	@Order(5)
+	void test_clearedBySweep() throws Exception {
+		String owned = nameOwnedBy("Swept", redirecting);
+		service(redirecting).create(owned, "EUR", false);
+		service(redirecting).deposit(owned, 100.0);
+		assertEquals(100.0, service(redirecting).findView(owned).getMoneyDouble());
+
+		proxying.getBean(AccountSweepService.class).sweep("Cluster", new BigDecimal("0.01"), BigDecimal.ZERO);
+		assertEquals(101.0, service(redirecting).findView(owned).getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that an account created on one node is found by name on the other
+	 * one.
+	 */
+	@Test
+	@Order(6)
+	void test_announcedToOtherNode() throws Exception {
+		service(proxying).create("Announced", "EUR", false);
+
+		List<AccountSummary> found = service(redirecting).search("announced", 10);
+		assertEquals(1, found.size());
+		assertEquals("Announced", found.get(0).getName());
+	}
+
+	/**
+	 * Asserts that the statistics of a service method are recorded once per call,
+	 * not once more for the storage service behind the cluster one.
+	 */
+	@Test
+	@Order(7)
+	void test_statisticsRecordedOnce() throws Exception {
+		String name = nameOwnedBy("Statistics", redirecting);
+		service(redirecting).create(name, "EUR", false);
+		MeterRegistry registry = redirecting.getBean(MeterRegistry.class);
+		long before = registry.summary("accounts.sql.service.statements", "method", "deposit").count();
+
+		service(redirecting).deposit(name, 1.0);
+		assertEquals(before + 1, registry.summary("accounts.sql.service.statements", "method", "deposit").count());
+	}
+
+	/**
+	 * Asserts that the accounts of a node leaving the cluster are taken over by
+	 * the remaining one.
+	 */
+	@Test
+	@Order(8)
+	void test_takeOverOnLeave() throws Exception {
+		String name = nameOwnedBy("Taken over", proxying);
+		proxying.close();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (ownership(redirecting).ownerOf(name) != null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertNull(ownership(redirecting).ownerOf(name));
+	}
+
+}
@@ -0,0 +1,133 @@
+package es.enrique.springbootexercise.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.Filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import es.enrique.springbootexercise.service.AccountService;
+
+/**
+ * Test cases for the CSV exports. Dumps are written under target. The server
+ * is started as well, to download the dumps through the container.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "spring.datasource.url=jdbc:h2:mem:export",
+		"accounts.export.directory=target/test-exports", "accounts.export.fetch-size=2" })
+@AutoConfigureMockMvc
+class ExportControllerTest {
+
+	// The file the last response was sent from with sendfile.
+	private static final AtomicReference<String> sentFile = new AtomicReference<>();
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private AccountService service;
+
+	@TestConfiguration
+	static class SendfileProbe {
+
+		@Bean
+		public Filter sendfileProbe() {
+			return (request, response, chain) -> {
+				chain.doFilter(request, response);
+				sentFile.set((String) request.getAttribute("org.apache.tomcat.sendfile.filename"));
+			};
+		}
+
+	}
+
+	/**
+	 * Asserts that a statement lists every change of the account with the balance
+	 * after it, and that it's not found for unknown accounts.
+	 */
+	@Test
+	void test_statement() throws Exception {
+		service.create("Export 1", "EUR", false);
+		service.deposit("Export 1", 100.0);
+		service.withdraw("Export 1", 30.0);
+		service.deposit("Export 1", 5.5);
+
+		String[] lines = mvc.perform(get("/exports/accounts/{name}/statement", "Export 1"))
+				.andExpect(status().isOk()).andExpect(content().contentTypeCompatibleWith("text/csv")).andReturn()
+				.getResponse().getContentAsString().split("\n");
+		assertEquals(4, lines.length);
+		assertEquals("id,changed_at,amount,balance", lines[0]);
+		assertBalance("100", lines[1]);
+		assertBalance("70", lines[2]);
+		assertBalance("75.5", lines[3]);
+
+		mvc.perform(get("/exports/accounts/{name}/statement", "Export missing")).andExpect(status().isNotFound());
+	}
+
+	/**
+	 * Asserts that a dump is written and then sent whole, quoting the names that
+	 * need it.
+	 */
+	@Test
+	void test_dump() throws Exception {
+		service.create("Export, quoted", "EUR", false);
+
+		mvc.perform(post("/exports/accounts")).andExpect(status().isCreated());
+		MvcResult result = mvc.perform(get("/exports/accounts")).andExpect(status().isOk()).andReturn();
+
+		String body = result.getResponse().getContentAsString();
+		assertTrue(body.startsWith("id,name,currency,money,treasury\n"));
+		assertTrue(body.contains(",\"Export, quoted\",EUR,"));
+		assertEquals(result.getResponse().getContentAsByteArray().length,
+				Long.parseLong(result.getResponse().getHeader("Content-Length")));
+	}
+
+	/**
+	 * Asserts that Tomcat sends a dump with sendfile, straight from its file.
+	 */
+	@Test
+	void test_dumpSentWithSendfile() throws Exception {
+		service.create("Export sendfile", "EUR", false);
+		mvc.perform(post("/exports/accounts")).andExpect(status().isCreated());
+
+		ResponseEntity<byte[]> response = rest.getForEntity("/exports/accounts", byte[].class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertNotNull(sentFile.get());
+		assertArrayEquals(Files.readAllBytes(Paths.get(sentFile.get())), response.getBody());
+		assertTrue(new String(response.getBody(), StandardCharsets.UTF_8).contains(",Export sendfile,EUR,"));
+	}
+
+	private static void assertBalance(String expected, String line) {
+		String[] fields = line.split(",");
+		assertEquals(0, new BigDecimal(expected).compareTo(new BigDecimal(fields[3])), line);
+	}
+
+}
@@ -0,0 +1,88 @@
+package es.enrique.springbootexercise.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import es.enrique.springbootexercise.service.AccountService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Test cases for the SQL statement statistics of requests and service methods.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:sql-statistics",
+		"accounts.sql.debug-headers=true", "accounts.sql.statement-budget=2" })
+@AutoConfigureMockMvc
+class SqlStatisticsFilterTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	/**
+	 * Asserts that a lookup costs a single statement returning a single row, and
+	 * stays within the budget.
+	 */
+	@Test
+	void test_findWithinBudget() throws Exception {
+		service.create("Statistics find", "EUR", false);
+
+		mvc.perform(get("/find").param("name", "Statistics find")).andExpect(status().isOk())
+				.andExpect(header().string(SqlStatisticsFilter.STATEMENTS_HEADER, "1"))
+				.andExpect(header().string(SqlStatisticsFilter.ROWS_HEADER, "1"))
+				.andExpect(header().exists(SqlStatisticsFilter.TIME_HEADER))
+				.andExpect(header().string(SqlStatisticsFilter.BUDGET_HEADER, "false"));
+
+		DistributionSummary statements = registry.find("accounts.sql.statements").tag("uri", "/find").summary();
+		assertNotNull(statements);
+		assertTrue(statements.count() > 0);
+	}
+
+	/**
+	 * Asserts that a transfer, locking and updating two accounts, goes over the
+	 * budget and is counted, and that the service method is recorded too.
+	 */
+	@Test
+	void test_transferOverBudget() throws Exception {
+		service.create("Statistics from", "EUR", false);
+		service.create("Statistics to", "EUR", false);
+		service.deposit("Statistics from", 100.0);
+
+		MvcResult result = mvc.perform(post("/transfer").param("nameAccountFrom", "Statistics from")
+				.param("nameAccountTo", "Statistics to").param("money", "10.0")).andExpect(status().isOk())
+				.andExpect(header().string(SqlStatisticsFilter.BUDGET_HEADER, "true")).andReturn();
+
+		assertTrue(Long.parseLong(result.getResponse().getHeader(SqlStatisticsFilter.STATEMENTS_HEADER)) > 2);
+
+		Counter exceeded = registry.find(SqlStatisticsFilter.BUDGET_EXCEEDED).tag("uri", "/transfer").counter();
+		assertNotNull(exceeded);
+		assertEquals(1.0, exceeded.count());
+
+		DistributionSummary transfer = registry.find("accounts.sql.service.statements").tag("method", "transfer")
+				.summary();
+		assertNotNull(transfer);
+		assertTrue(transfer.max() > 2);
+	}
+
+}
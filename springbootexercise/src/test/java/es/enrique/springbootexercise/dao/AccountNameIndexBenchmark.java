@@ -0,0 +1,47 @@
+package es.enrique.springbootexercise.dao;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the memory and prefix search latency of the account name index with
+ * millions of accounts. Run with {@code mvn test -Pbenchmark}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class AccountNameIndexBenchmark {
+
+	private static final int ACCOUNTS = 2_000_000;
+	private static final int SEARCHES = 100_000;
+
+	@Test
+	void benchmark_searchLatencyAndMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+		AccountNameIndex index = new AccountNameIndex();
+		long start = System.nanoTime();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			index.add(i, "Customer " + Integer.toString(i, 36));
+		}
+		double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.gc();
+		long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		start = System.nanoTime();
+		for (int i = 0; i < SEARCHES; i++) {
+			String name = "customer " + Integer.toString(random.nextInt(ACCOUNTS), 36);
+			index.search(name.substring(0, name.length() - 1), 20);
+		}
+		double searchMicros = (System.nanoTime() - start) / 1e3 / SEARCHES;
+
+		System.out.printf("%d accounts loaded in %.1f s, %.1f MB of heap, %.1f us per search%n", index.size(),
+				loadSeconds, (heapAfter - heapBefore) / 1e6, searchMicros);
+	}
+
+}
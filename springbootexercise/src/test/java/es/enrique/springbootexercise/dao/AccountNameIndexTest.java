@@ -0,0 +1,88 @@
+package es.enrique.springbootexercise.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.enrique.springbootexercise.model.AccountSummary;
+
+/**
+ * Unit test cases for the in-memory account name index.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class AccountNameIndexTest {
+
+	private AccountNameIndex index;
+
+	@BeforeEach
+	void setupIndex() {
+		index = new AccountNameIndex();
+		index.add(1, "Alice");
+		index.add(2, "alicia");
+		index.add(3, "Albert");
+		index.add(4, "Bob");
+		index.add(5, "ALICE");
+	}
+
+	/**
+	 * Asserts that names are found by a prefix regardless of case, in name order
+	 * and with their original case.
+	 */
+	@Test
+	void test_search_ignoresCase() {
+		List<AccountSummary> found = index.search("ali", 10);
+
+		assertEquals(3, found.size());
+		assertEquals("Alice", found.get(0).getName());
+		assertEquals("ALICE", found.get(1).getName());
+		assertEquals("alicia", found.get(2).getName());
+		assertEquals(Integer.valueOf(2), found.get(2).getId());
+	}
+
+	/**
+	 * Asserts that a prefix ending in the middle of a shared run of characters
+	 * finds every name below it.
+	 */
+	@Test
+	void test_search_prefixInsideEdge() {
+		assertEquals(4, index.search("A", 10).size());
+		assertEquals(1, index.search("alb", 10).size());
+		assertEquals(5, index.search("", 10).size());
+	}
+
+	/**
+	 * Asserts that no names are found for a prefix that diverges from every name.
+	 */
+	@Test
+	void test_search_noMatch() {
+		assertTrue(index.search("alx", 10).isEmpty());
+		assertTrue(index.search("alicex", 10).isEmpty());
+		assertTrue(index.search("c", 10).isEmpty());
+	}
+
+	/**
+	 * Asserts that the number of accounts returned is limited.
+	 */
+	@Test
+	void test_search_limit() {
+		assertEquals(2, index.search("a", 2).size());
+	}
+
+	/**
+	 * Asserts that adding the same account twice has no effect.
+	 */
+	@Test
+	void test_add_sameAccountTwice() {
+		index.add(4, "Bob");
+
+		assertEquals(5, index.size());
+		assertEquals(1, index.search("bob", 10).size());
+	}
+
+}
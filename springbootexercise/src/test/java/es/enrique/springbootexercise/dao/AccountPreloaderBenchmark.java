@@ -0,0 +1,109 @@
+package es.enrique.springbootexercise.dao;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Measures the restart of the durable storage with 10 million accounts: the
+ * time to open the file after a crash, the time of a full restart with one and
+ * several preloading threads, and the latency of the first lookups with a cold
+ * and a warm cache. A full restart opens the file, loads the name index as
+ * the application does when ready and preloads the hot accounts. Run with
+ * {@code mvn test -Pbenchmark}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class AccountPreloaderBenchmark {
+
+	private static final int ACCOUNTS = 10_000_000;
+	private static final int HOT_ACCOUNTS = 100_000;
+	private static final int LOOKUPS = 10_000;
+
+	@Test
+	void benchmark_restart() throws Exception {
+		Path directory = Files.createTempDirectory("accounts-benchmark");
+		String url = "jdbc:h2:file:" + directory.resolve("accounts")
+				+ ";WRITE_DELAY=0;CACHE_SIZE=262144;DB_CLOSE_DELAY=-1";
+
+		JdbcTemplate jdbcTemplate = open(url);
+		DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("data-durable.sql")),
+				jdbcTemplate.getDataSource());
+		long start = System.nanoTime();
+		jdbcTemplate.update("INSERT INTO accounts (name, currency, money, treasury) "
+				+ "SELECT 'Account ' || X, 'EUR', 100, FALSE FROM SYSTEM_RANGE(1, ?)", ACCOUNTS);
+		jdbcTemplate.update("INSERT INTO balance_changes (account_id, changed_at, amount) "
+				+ "SELECT MOD(X * 7919, ?) + 1, CURRENT_TIMESTAMP, 1 FROM SYSTEM_RANGE(1, ?)", ACCOUNTS,
+				HOT_ACCOUNTS * 2);
+		System.out.printf("%d accounts written in %.1f s%n", ACCOUNTS, seconds(start));
+		// Simulate a crash, nothing is flushed or compacted on the way out.
+		jdbcTemplate.execute("SHUTDOWN IMMEDIATELY");
+
+		start = System.nanoTime();
+		jdbcTemplate = open(url);
+		jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE id = 1", Integer.class);
+		System.out.printf("Recovered after a crash in %.1f s%n", seconds(start));
+		List<String> hotNames = hotNames(jdbcTemplate);
+		System.out.printf("Cold lookups: %.1f us each%n", lookupMicros(jdbcTemplate, hotNames));
+
+		for (int threads : new int[] { 1, 4 }) {
+			jdbcTemplate.execute("SHUTDOWN");
+			start = System.nanoTime();
+			jdbcTemplate = open(url);
+			long indexStart = System.nanoTime();
+			AccountNameIndex nameIndex = loadNameIndex(jdbcTemplate);
+			double indexSeconds = seconds(indexStart);
+			int preloaded = new AccountPreloader(jdbcTemplate, HOT_ACCOUNTS, threads).preload();
+			System.out.printf(
+					"Restarted, indexed %d names in %.1f s and preloaded %d accounts with %d thread(s) in %.1f s%n",
+					nameIndex.size(), indexSeconds, preloaded, threads, seconds(start));
+		}
+		System.out.printf("Warm lookups: %.1f us each%n", lookupMicros(jdbcTemplate, hotNames));
+		jdbcTemplate.execute("SHUTDOWN");
+	}
+
+	private static JdbcTemplate open(String url) {
+		return new JdbcTemplate(new DriverManagerDataSource(url, "test", "test"));
+	}
+
+	/**
+	 * Loads the name index with the same query as
+	 * {@link es.enrique.springbootexercise.service.impl.AccountServiceImpl#loadNameIndex()}.
+	 */
+	private static AccountNameIndex loadNameIndex(JdbcTemplate jdbcTemplate) {
+		AccountNameIndex nameIndex = new AccountNameIndex();
+		jdbcTemplate.query("SELECT id, name FROM accounts", rs -> {
+			nameIndex.add(rs.getInt("id"), rs.getString("name"));
+		});
+		return nameIndex;
+	}
+
+	private static List<String> hotNames(JdbcTemplate jdbcTemplate) {
+		return jdbcTemplate.queryForList("SELECT 'Account ' || (MOD(X * 7919, ?) + 1) FROM SYSTEM_RANGE(1, ?)",
+				String.class, ACCOUNTS, HOT_ACCOUNTS);
+	}
+
+	private static double lookupMicros(JdbcTemplate jdbcTemplate, List<String> names) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long start = System.nanoTime();
+		for (int i = 0; i < LOOKUPS; i++) {
+			jdbcTemplate.queryForList("SELECT money FROM accounts WHERE name = ?",
+					names.get(random.nextInt(names.size())));
+		}
+		return (System.nanoTime() - start) / 1e3 / LOOKUPS;
+	}
+
+	private static double seconds(long start) {
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+}
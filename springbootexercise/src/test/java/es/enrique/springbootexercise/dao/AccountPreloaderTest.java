@@ -0,0 +1,50 @@
+package es.enrique.springbootexercise.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import es.enrique.springbootexercise.service.AccountService;
+
+/**
+ * Test cases for the preloading of hot accounts.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:preload")
+class AccountPreloaderTest {
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Asserts that only the accounts changed most recently are preloaded, and that
+	 * the application is reported out of service until then.
+	 */
+	@Test
+	void test_preloadHotAccounts() throws Exception {
+		for (int i = 1; i <= 3; i++) {
+			service.create("Preload " + i, "EUR", false);
+		}
+		service.deposit("Preload 1", 10.0);
+		service.deposit("Preload 2", 10.0);
+		service.deposit("Preload 3", 10.0);
+		service.deposit("Preload 3", 10.0);
+
+		AccountPreloader preloader = new AccountPreloader(jdbcTemplate, 2, 2);
+		assertEquals(Status.OUT_OF_SERVICE, preloader.health().getStatus());
+
+		assertEquals(2, preloader.preload());
+		assertEquals(Status.UP, preloader.health().getStatus());
+		assertEquals(2, preloader.health().getDetails().get("accounts"));
+	}
+
+}
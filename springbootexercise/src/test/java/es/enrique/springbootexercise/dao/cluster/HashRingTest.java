@@ -0,0 +1,63 @@
+package es.enrique.springbootexercise.dao.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases for the consistent-hash ring.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class HashRingTest {
+
+	private static final int KEYS = 100_000;
+
+	/**
+	 * Asserts that the keys are spread evenly over the nodes.
+	 */
+	@Test
+	void test_balanced() {
+		HashRing ring = new HashRing(Arrays.asList("a", "b", "c", "d"), 64);
+
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(ring.nodeFor("key " + i), 1, Integer::sum);
+		}
+
+		assertEquals(4, counts.size());
+		for (int count : counts.values()) {
+			assertTrue(count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3, "Unbalanced: " + counts);
+		}
+	}
+
+	/**
+	 * Asserts that when a node joins only keys moving to it change owner, and
+	 * that an empty ring has no owner for any key.
+	 */
+	@Test
+	void test_joinMovesOnlyToNewNode() {
+		HashRing before = new HashRing(Arrays.asList("a", "b", "c"), 64);
+		HashRing after = new HashRing(Arrays.asList("a", "b", "c", "d"), 64);
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "key " + i;
+			if (!before.nodeFor(key).equals(after.nodeFor(key))) {
+				assertEquals("d", after.nodeFor(key));
+				moved++;
+			}
+		}
+		assertTrue(moved > KEYS / 4 * 0.7 && moved < KEYS / 4 * 1.3, "Moved: " + moved);
+
+		assertNull(new HashRing(Arrays.asList(), 64).nodeFor("key"));
+	}
+
+}
@@ -0,0 +1,71 @@
+package es.enrique.springbootexercise.dao.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.enrique.springbootexercise.service.AccountNotFoundException;
+import es.enrique.springbootexercise.service.AccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Test cases for read/write routing between two local H2 instances. The
+ * replica is only synchronized when the tests ask for it.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = { "accounts.datasource.routing.enabled=true",
+		"spring.datasource.url=jdbc:h2:mem:routing-primary", "accounts.datasource.replica.url=jdbc:h2:mem:routing-replica",
+		"accounts.datasource.replica.sync-interval=3600000" })
+class ReadWriteRoutingDataSourceTest {
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private ReplicaSynchronizer synchronizer;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@AfterEach
+	void clearSession() {
+		ClientSessionHolder.clear();
+	}
+
+	/**
+	 * Asserts that a session reads its own writes while other sessions read from
+	 * the replica until it's synchronized.
+	 */
+	@Test
+	void test_readYourWrites() throws Exception {
+		ClientSessionHolder.begin("session-a");
+		service.create("Routing 1", "EUR", false);
+		assertEquals("Routing 1", service.find("Routing 1").getName());
+
+		ClientSessionHolder.begin("session-b");
+		assertThrows(AccountNotFoundException.class, () -> service.find("Routing 1"));
+
+		synchronizer.synchronize();
+		assertEquals("Routing 1", service.find("Routing 1").getName());
+	}
+
+	/**
+	 * Asserts that the replica lag metric reflects the writes not yet replicated.
+	 */
+	@Test
+	void test_replicaLagMetric() throws Exception {
+		service.create("Routing 2", "EUR", false);
+		assertTrue(registry.get("accounts.replica.lag.writes").gauge().value() > 0);
+
+		synchronizer.synchronize();
+		assertEquals(0.0, registry.get("accounts.replica.lag.writes").gauge().value());
+	}
+
+}
@@ -0,0 +1,42 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.enrique.springbootexercise.service.AccountServiceTortureSuite.Result;
+
+/**
+ * Reports the throughput and contention of the service at growing thread
+ * counts, checking the money invariants all along. Run with
+ * {@code mvn test -Pbenchmark}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:concurrency-benchmark;LOCK_TIMEOUT=10000")
+class AccountServiceConcurrencyBenchmark {
+
+	private static final int ACCOUNTS = 50;
+	private static final int ROUNDS = 20;
+	private static final int OPERATIONS_PER_ROUND = 500;
+
+	@Autowired
+	private AccountService service;
+
+	@Test
+	void benchmark_throughputAndContentionByThreadCount() throws Exception {
+		AccountServiceTortureSuite suite = new AccountServiceTortureSuite(service, "Benchmark", ACCOUNTS);
+
+		Result baseline = suite.run(1, ROUNDS, OPERATIONS_PER_ROUND);
+		System.out.println(baseline.format(baseline));
+		for (int threads : new int[] { 2, 4, 8, 16, 32 }) {
+			System.out.println(suite.run(threads, ROUNDS, OPERATIONS_PER_ROUND).format(baseline));
+		}
+
+		assertTrue(suite.getViolations().isEmpty(), () -> String.join("\n", suite.getViolations()));
+	}
+
+}
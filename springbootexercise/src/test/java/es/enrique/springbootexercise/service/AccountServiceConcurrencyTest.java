@@ -0,0 +1,41 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.enrique.springbootexercise.service.AccountServiceTortureSuite.Result;
+
+/**
+ * Asserts that the money invariants hold when the service is used from many
+ * threads at once. See {@link AccountServiceConcurrencyBenchmark} for a longer
+ * run that reports throughput and contention.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:concurrency;LOCK_TIMEOUT=10000")
+class AccountServiceConcurrencyTest {
+
+	@Autowired
+	private AccountService service;
+
+	/**
+	 * Runs random operations from 1, 4 and 8 threads against 10 accounts.
+	 */
+	@Test
+	void test_moneyInvariantsUnderConcurrency() throws Exception {
+		AccountServiceTortureSuite suite = new AccountServiceTortureSuite(service, "Concurrency", 10);
+
+		// The numbers are only reported by the benchmark.
+		for (int threads : new int[] { 1, 4, 8 }) {
+			Result result = suite.run(threads, 3, 50);
+			assertTrue(result.getThroughput() > 0, threads + " thread(s) ran no operation");
+		}
+
+		assertTrue(suite.getViolations().isEmpty(), () -> String.join("\n", suite.getViolations()));
+	}
+
+}
@@ -2,19 +2,33 @@ package es.enrique.springbootexercise.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import es.enrique.springbootexercise.dao.AccountRepository;
+import es.enrique.springbootexercise.dao.statistics.SqlStatistics;
 import es.enrique.springbootexercise.model.Account;
+import es.enrique.springbootexercise.model.AccountSummary;
+import es.enrique.springbootexercise.model.AccountView;
 
-@SpringBootTest
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:service", "accounts.lookup.chunk-size=4" })
 @TestInstance(Lifecycle.PER_CLASS)
 public class AccountServiceTest {
 
@@ -24,6 +38,12 @@ public class AccountServiceTest {
 	@Autowired
 	private AccountService service;
 
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
 	@BeforeAll
 	void setupMock() {
 		// Set up the accounts for testing.
@@ -72,6 +92,110 @@ public class AccountServiceTest {
 		assertThrows(AccountNotFoundException.class, () -> service.find(name));
 	}
 
+	/**
+	 * Asserts that the read-only view of an account holds the same data as the
+	 * entity and serializes to the same JSON.
+	 */
+	@Test
+	void test_findView() {
+
+		try {
+
+			Account found = service.find("Test 2");
+			AccountView view = service.findView("Test 2");
+
+			assertEquals(found.getId(), view.getId());
+			assertEquals(found.getMoney(), view.getMoney());
+			assertTrue(found.getCurrency() == view.getCurrency());
+			assertEquals(mapper.writeValueAsString(found), mapper.writeValueAsString(view));
+
+		} catch (Exception e) {
+			fail("Account view not found");
+		}
+
+		assertThrows(AccountNotFoundException.class, () -> service.findView("Non existing account"));
+	}
+
+	/**
+	 * Asserts that several accounts are found with a single query, leaving out
+	 * the names of accounts that don't exist.
+	 */
+	@Test
+	void test_findViews() {
+		SqlStatistics start = SqlStatistics.current().snapshot();
+		List<AccountView> found = service
+				.findViews(Arrays.asList("Test 1", "Non existing account", "Test 2", "Test 1"));
+
+		assertEquals(1, SqlStatistics.current().since(start).getStatements());
+		assertEquals(2, found.size());
+		assertEquals(new HashSet<>(Arrays.asList("Test 1", "Test 2")),
+				found.stream().map(AccountView::getName).collect(Collectors.toSet()));
+	}
+
+	/**
+	 * Asserts that names beyond the chunk size are found with one query per
+	 * chunk, the last chunk padded up to a power of two without returning any
+	 * account twice.
+	 */
+	@Test
+	void test_findViewsInChunks() throws Exception {
+		List<String> names = new ArrayList<>();
+		for (int i = 1; i <= 6; i++) {
+			service.create("Chunked " + i, "EUR", false);
+			names.add("Chunked " + i);
+		}
+		// 7 distinct names, in a chunk of 4 and another of 3 padded to 4.
+		names.add("Chunked missing");
+		names.add("Chunked 1");
+
+		SqlStatistics start = SqlStatistics.current().snapshot();
+		List<AccountView> found = service.findViews(names);
+
+		assertEquals(2, SqlStatistics.current().since(start).getStatements());
+		assertEquals(6, found.size());
+		assertEquals(new HashSet<>(names.subList(0, 6)),
+				found.stream().map(AccountView::getName).collect(Collectors.toSet()));
+	}
+
+	/**
+	 * Asserts that a newly created account can be found by a prefix of its name,
+	 * ignoring case.
+	 */
+	@Test
+	void test_searchAccountsByPrefix() {
+		try {
+			service.create("Search Test 1", "EUR", false);
+			service.create("Search Test 2", "EUR", false);
+		} catch (AccountAlreadyExistsException e) {
+			fail("Account already exists.");
+		}
+
+		List<AccountSummary> found = service.search("search test", 10);
+
+		assertEquals(2, found.size());
+		assertEquals("Search Test 1", found.get(0).getName());
+		assertTrue(service.search("search test 3", 10).isEmpty());
+	}
+
+	/**
+	 * Asserts that an account whose creation is rolled back can't be found by
+	 * name.
+	 */
+	@Test
+	void test_searchRolledBackAccount() {
+		new TransactionTemplate(transactionManager).execute(status -> {
+			try {
+				service.create("Search rolled back", "EUR", false);
+			} catch (AccountAlreadyExistsException e) {
+				fail("Account already exists.");
+			}
+			status.setRollbackOnly();
+			return null;
+		});
+
+		assertTrue(service.search("search rolled back", 10).isEmpty());
+	}
+
 	/**
 	 * Asserts that a new account is created correctly in the system.
 	 */
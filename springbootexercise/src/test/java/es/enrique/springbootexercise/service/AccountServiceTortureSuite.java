@@ -0,0 +1,231 @@
+package es.enrique.springbootexercise.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.dao.ConcurrencyFailureException;
+
+import es.enrique.springbootexercise.model.Account;
+
+/**
+ * Runs randomized concurrent transfers, deposits and withdrawals against a fixed
+ * set of accounts of any {@link AccountService}, checking the money invariants
+ * while it runs:
+ *
+ * - No non-treasury account ever has a negative balance. Checked continuously
+ * by a monitor thread.
+ *
+ * - The total money of the accounts equals the money deposited minus the money
+ * withdrawn. Checked at the end of every round, when the workers are paused.
+ *
+ * Every run reports its throughput and contention, so concurrency strategies
+ * can be compared against each other.
+ *
+ * @author Enrique Rosales
+ *
+ */
+public class AccountServiceTortureSuite {
+
+	private static final long INITIAL_CENTS = 100_000;
+	private static final int MAX_AMOUNT_CENTS = 5_000;
+
+	private final AccountService service;
+	private final List<String> accounts = new ArrayList<>();
+	private final String treasury;
+	private final AtomicLong expectedCents = new AtomicLong();
+	private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Creates the accounts used by the suite: a treasury account and the given
+	 * number of regular accounts, each funded by the treasury.
+	 */
+	public AccountServiceTortureSuite(AccountService service, String prefix, int accountCount) throws Exception {
+		this.service = service;
+		this.treasury = prefix + " treasury";
+		service.create(treasury, "EUR", true);
+		accounts.add(treasury);
+
+		for (int i = 0; i < accountCount; i++) {
+			String name = prefix + " " + i;
+			service.create(name, "EUR", false);
+			service.transfer(treasury, name, INITIAL_CENTS / 100.0);
+			accounts.add(name);
+		}
+		expectedCents.set(totalCents());
+	}
+
+	/**
+	 * @return the invariant violations found so far
+	 */
+	public Queue<String> getViolations() {
+		return violations;
+	}
+
+	/**
+	 * Runs the given number of rounds of random operations from the given number of
+	 * threads, checking the total money at the end of every round.
+	 */
+	public Result run(int threads, int rounds, int operationsPerRound) throws InterruptedException {
+		Result result = new Result(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		CyclicBarrier endOfRound = new CyclicBarrier(threads, this::checkTotal);
+
+		Thread monitor = new Thread(() -> {
+			while (running.get()) {
+				checkBalances();
+			}
+		}, "torture-monitor");
+
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(new Thread(() -> {
+				try {
+					for (int r = 0; r < rounds; r++) {
+						for (int i = 0; i < operationsPerRound; i++) {
+							runOperation(result);
+						}
+						endOfRound.await();
+					}
+				} catch (InterruptedException | BrokenBarrierException e) {
+					violations.add("Worker interrupted: " + e);
+				}
+			}, "torture-worker-" + t));
+		}
+
+		long start = System.nanoTime();
+		monitor.start();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		result.nanos = System.nanoTime() - start;
+
+		running.set(false);
+		monitor.join();
+		checkBalances();
+		return result;
+	}
+
+	private void runOperation(Result result) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String name = accounts.get(random.nextInt(accounts.size()));
+		long cents = 1 + random.nextInt(MAX_AMOUNT_CENTS);
+		double amount = cents / 100.0;
+
+		long start = System.nanoTime();
+		try {
+			int operation = random.nextInt(4);
+			if (operation == 0) {
+				service.deposit(name, amount);
+				expectedCents.addAndGet(cents);
+			} else if (operation == 1) {
+				service.withdraw(name, amount);
+				expectedCents.addAndGet(-cents);
+			} else {
+				service.transfer(name, accounts.get(random.nextInt(accounts.size())), amount);
+			}
+		} catch (NegativeBalanceException e) {
+			result.rejected.increment();
+		} catch (ConcurrencyFailureException e) {
+			// Lock timeouts and deadlocks, the operation didn't happen.
+			result.lockFailures.increment();
+		} catch (Exception e) {
+			violations.add("Unexpected failure: " + e);
+		}
+		result.operations.increment();
+		result.latencyNanos.add(System.nanoTime() - start);
+	}
+
+	private void checkBalances() {
+		for (String name : accounts) {
+			try {
+				Account account = service.find(name);
+				if (!Boolean.TRUE.equals(account.getTreasury()) && account.getMoney().isNegative()) {
+					violations.add(name + " has a negative balance: " + account.getMoney());
+				}
+			} catch (Exception e) {
+				violations.add("Can't read " + name + ": " + e);
+			}
+		}
+	}
+
+	private void checkTotal() {
+		try {
+			long total = totalCents();
+			if (total != expectedCents.get()) {
+				violations.add("Total money is " + total + " cents, expected " + expectedCents.get());
+			}
+		} catch (Exception e) {
+			violations.add("Can't read the total money: " + e);
+		}
+	}
+
+	private long totalCents() throws AccountNotFoundException {
+		BigDecimal total = BigDecimal.ZERO;
+		for (String name : accounts) {
+			total = total.add(service.find(name).getMoney().getAmount());
+		}
+		return total.movePointRight(2).longValueExact();
+	}
+
+	/**
+	 * Throughput and contention figures of a run.
+	 */
+	public static class Result {
+
+		private final int threads;
+		private final LongAdder operations = new LongAdder();
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder lockFailures = new LongAdder();
+		private final LongAdder latencyNanos = new LongAdder();
+		private long nanos;
+
+		private Result(int threads) {
+			this.threads = threads;
+		}
+
+		/**
+		 * @return the operations completed per second
+		 */
+		public double getThroughput() {
+			return operations.sum() / (nanos / 1e9);
+		}
+
+		/**
+		 * @return the mean latency of an operation in microseconds
+		 */
+		public double getMeanLatencyMicros() {
+			return latencyNanos.sum() / 1e3 / Math.max(1, operations.sum());
+		}
+
+		/**
+		 * @return the operations that failed to get their locks
+		 */
+		public long getLockFailures() {
+			return lockFailures.sum();
+		}
+
+		/**
+		 * Formats the figures of the run. Contention is the mean latency relative to
+		 * the given baseline, usually the single-threaded run.
+		 */
+		public String format(Result baseline) {
+			return String.format("%2d threads: %8.0f ops/s, %8.1f us/op, contention %5.2fx, %d rejected, %d lock failures",
+					threads, getThroughput(), getMeanLatencyMicros(),
+					getMeanLatencyMicros() / baseline.getMeanLatencyMicros(), rejected.sum(), lockFailures.sum());
+		}
+
+	}
+
+}
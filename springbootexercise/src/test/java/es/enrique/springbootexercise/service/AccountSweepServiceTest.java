@@ -0,0 +1,93 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.enrique.springbootexercise.model.SweepReport;
+
+/**
+ * Test cases for the interest and fee sweep. Chunks hold 2 accounts and
+ * checkpoints are taken every 2 changes, so both are exercised with few
+ * accounts.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:sweep", "accounts.sweep.chunk-size=2",
+		"accounts.history.checkpoint-interval=2" })
+class AccountSweepServiceTest {
+
+	private static final BigDecimal INTEREST = new BigDecimal("0.01");
+	private static final BigDecimal FEE = new BigDecimal("1.00");
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private AccountSweepService sweeps;
+
+	@Autowired
+	private BalanceHistoryService history;
+
+	/**
+	 * Asserts that interest and fees are applied with the scale of each currency,
+	 * that fees never take a balance below 0 nor apply to treasury accounts, and
+	 * that the history matches the new balances.
+	 */
+	@Test
+	void test_sweep() throws Exception {
+		service.create("Sweep rich", "EUR", false);
+		service.create("Sweep poor", "EUR", false);
+		service.create("Sweep treasury", "EUR", true);
+		service.create("Sweep yen", "JPY", false);
+		service.deposit("Sweep rich", 1000.0);
+		service.deposit("Sweep poor", 0.5);
+		service.withdraw("Sweep treasury", 100.0);
+		service.deposit("Sweep yen", 1050.0);
+
+		SweepReport report = sweeps.sweep("2026-09", INTEREST, FEE);
+		assertEquals(3, report.getAccounts());
+		assertTrue(report.getChunks() >= 2);
+
+		assertEquals(1009.0, service.findView("Sweep rich").getMoneyDouble());
+		assertEquals(0.0, service.findView("Sweep poor").getMoneyDouble());
+		assertEquals(-100.0, service.findView("Sweep treasury").getMoneyDouble());
+		// 10.5 yen of interest are rounded half even to 10.
+		assertEquals(1059.0, service.findView("Sweep yen").getMoneyDouble());
+
+		Instant now = Instant.now();
+		for (String name : new String[] { "Sweep rich", "Sweep poor", "Sweep treasury", "Sweep yen" }) {
+			assertEquals(0, BigDecimal.valueOf(service.findView(name).getMoneyDouble())
+					.compareTo(history.balanceAt(name, now).getMoney()), name);
+		}
+	}
+
+	/**
+	 * Asserts that running a sweep again skips the chunks already done, and that
+	 * it can't be run again with other rates.
+	 */
+	@Test
+	void test_resume() throws Exception {
+		service.create("Resume 1", "EUR", false);
+		service.deposit("Resume 1", 100.0);
+
+		sweeps.sweep("Resume", INTEREST, FEE);
+		SweepReport again = sweeps.sweep("Resume", INTEREST, FEE);
+
+		assertEquals(0, again.getAccounts());
+		assertEquals(0, again.getChunks());
+		assertTrue(again.getSkippedChunks() > 0);
+		assertEquals(100.0, service.findView("Resume 1").getMoneyDouble());
+
+		assertThrows(SweepConflictException.class, () -> sweeps.sweep("Resume", BigDecimal.ZERO, FEE));
+	}
+
+}
@@ -0,0 +1,61 @@
+package es.enrique.springbootexercise.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Compares the latency and the memory allocated per lookup of the entity path,
+ * {@link AccountService#find}, with the projection path,
+ * {@link AccountService#findView}. Run with {@code mvn test -Pbenchmark}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:view-benchmark")
+class AccountViewBenchmark {
+
+	private static final int ACCOUNTS = 1_000;
+	private static final int WARMUP = 50_000;
+	private static final int LOOKUPS = 200_000;
+
+	private interface Lookup {
+		Object find(String name) throws Exception;
+	}
+
+	@Autowired
+	private AccountService service;
+
+	@Test
+	void benchmark_entityVersusView() throws Exception {
+		for (int i = 0; i < ACCOUNTS; i++) {
+			service.create("View " + i, "EUR", false);
+		}
+
+		run("Entity", service::find, WARMUP);
+		run("View", service::findView, WARMUP);
+		System.out.println(run("Entity", service::find, LOOKUPS));
+		System.out.println(run("View", service::findView, LOOKUPS));
+	}
+
+	private static String run(String path, Lookup lookup, int lookups) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			lookup.find("View " + random.nextInt(ACCOUNTS));
+		}
+		double micros = (System.nanoTime() - start) / 1e3 / lookups;
+		long allocated = (threads.getThreadAllocatedBytes(thread) - allocatedBefore) / lookups;
+
+		return String.format("%s: %.1f us and %d bytes allocated per lookup", path, micros, allocated);
+	}
+
+}
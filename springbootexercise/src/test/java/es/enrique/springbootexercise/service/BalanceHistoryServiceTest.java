@@ -0,0 +1,96 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.enrique.springbootexercise.dao.AccountRepository;
+import es.enrique.springbootexercise.dao.BalanceCheckpointRepository;
+
+/**
+ * Test cases for the point-in-time balance queries. Checkpoints are taken every
+ * 3 changes so they are exercised with few operations.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = "accounts.history.checkpoint-interval=3")
+class BalanceHistoryServiceTest {
+
+	@Autowired
+	private AccountService service;
+
+	@Autowired
+	private BalanceHistoryService history;
+
+	@Autowired
+	private AccountRepository repository;
+
+	@Autowired
+	private BalanceCheckpointRepository checkpointRepository;
+
+	/**
+	 * Asserts that the balance at any time between operations is the one the
+	 * account had then, across several checkpoints.
+	 */
+	@Test
+	void test_balanceAt() throws Exception {
+		service.create("History 1", "EUR", false);
+		List<Instant> times = new ArrayList<>();
+		for (int i = 1; i <= 8; i++) {
+			Thread.sleep(2);
+			service.deposit("History 1", 10.0);
+			Thread.sleep(2);
+			times.add(Instant.now());
+		}
+
+		for (int i = 0; i < times.size(); i++) {
+			BigDecimal expected = BigDecimal.valueOf(10 * (i + 1));
+			assertEquals(0, expected.compareTo(history.balanceAt("History 1", times.get(i)).getMoney()));
+		}
+		// One checkpoint on creation and one every 3 changes.
+		assertEquals(3, checkpointRepository.countByAccountId(repository.findByName("History 1").getId()));
+	}
+
+	/**
+	 * Asserts that withdrawals and transfers are recorded on both accounts.
+	 */
+	@Test
+	void test_balanceAt_transfer() throws Exception {
+		service.create("History 2", "EUR", false);
+		service.create("History 3", "EUR", false);
+		service.deposit("History 2", 100.0);
+		service.withdraw("History 2", 30.0);
+		Thread.sleep(2);
+		Instant beforeTransfer = Instant.now();
+		Thread.sleep(2);
+		service.transfer("History 2", "History 3", 50.0);
+
+		assertEquals(0, BigDecimal.valueOf(70).compareTo(history.balanceAt("History 2", beforeTransfer).getMoney()));
+		assertEquals(0, BigDecimal.ZERO.compareTo(history.balanceAt("History 3", beforeTransfer).getMoney()));
+		assertEquals(0, BigDecimal.valueOf(20).compareTo(history.balanceAt("History 2", Instant.now()).getMoney()));
+		assertEquals(0, BigDecimal.valueOf(50).compareTo(history.balanceAt("History 3", Instant.now()).getMoney()));
+	}
+
+	/**
+	 * Asserts that an account has no balance before it was created.
+	 */
+	@Test
+	void test_balanceAt_beforeCreation() throws Exception {
+		Instant beforeCreation = Instant.now();
+		Thread.sleep(2);
+		service.create("History 4", "EUR", false);
+
+		assertThrows(AccountNotFoundException.class, () -> history.balanceAt("History 4", beforeCreation));
+		assertThrows(AccountNotFoundException.class, () -> history.balanceAt("Non existing account", Instant.now()));
+	}
+
+}
@@ -0,0 +1,113 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.enrique.springbootexercise.model.ScheduledTransfer;
+import es.enrique.springbootexercise.model.ScheduledTransfer.Status;
+
+/**
+ * Test cases for the scheduled transfers. The wheel ticks every 50
+ * milliseconds so they come due quickly.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = "accounts.scheduling.tick=50")
+class ScheduledTransferServiceTest {
+
+	@Autowired
+	private AccountService accountService;
+
+	@Autowired
+	private ScheduledTransferService service;
+
+	/**
+	 * Asserts that a future-dated transfer is executed once it's due.
+	 */
+	@Test
+	void test_executedWhenDue() throws Exception {
+		accountService.create("Scheduled 1", "EUR", false);
+		accountService.create("Scheduled 2", "EUR", false);
+		accountService.deposit("Scheduled 1", 100.0);
+
+		ScheduledTransfer transfer = service.schedule("Scheduled 1", "Scheduled 2", 30.0,
+				Instant.now().plusMillis(300), null);
+		assertEquals(Status.PENDING, service.find(transfer.getId()).getStatus());
+
+		transfer = await(transfer.getId(), t -> t.getStatus() != Status.PENDING);
+		assertEquals(Status.DONE, transfer.getStatus());
+		assertEquals(1, transfer.getExecutions().intValue());
+		assertEquals(70.0, accountService.find("Scheduled 1").getMoney().getAmount().doubleValue());
+		assertEquals(30.0, accountService.find("Scheduled 2").getMoney().getAmount().doubleValue());
+	}
+
+	/**
+	 * Asserts that a standing order that missed several executions runs all of
+	 * them at once and is scheduled again for the next one.
+	 */
+	@Test
+	void test_catchUp() throws Exception {
+		accountService.create("Scheduled 3", "EUR", true);
+		accountService.create("Scheduled 4", "EUR", false);
+
+		Instant first = Instant.now().truncatedTo(ChronoUnit.MILLIS).minus(3, ChronoUnit.HOURS).minusSeconds(1);
+		ScheduledTransfer transfer = service.schedule("Scheduled 3", "Scheduled 4", 10.0, first, 3600L);
+
+		transfer = await(transfer.getId(), t -> t.getExecutions() == 4);
+		assertEquals(Status.PENDING, transfer.getStatus());
+		assertEquals(first.plus(4, ChronoUnit.HOURS), transfer.getExecuteAt());
+		assertEquals(40.0, accountService.find("Scheduled 4").getMoney().getAmount().doubleValue());
+	}
+
+	/**
+	 * Asserts that a transfer that would leave the account negative fails and
+	 * records why.
+	 */
+	@Test
+	void test_failed() throws Exception {
+		accountService.create("Scheduled 5", "EUR", false);
+		accountService.create("Scheduled 6", "EUR", false);
+
+		ScheduledTransfer transfer = service.schedule("Scheduled 5", "Scheduled 6", 10.0, Instant.now(), null);
+
+		transfer = await(transfer.getId(), t -> t.getStatus() != Status.PENDING);
+		assertEquals(Status.FAILED, transfer.getStatus());
+		assertNotNull(transfer.getLastError());
+		assertEquals(0.0, accountService.find("Scheduled 6").getMoney().getAmount().doubleValue());
+	}
+
+	/**
+	 * Asserts that transfers between unknown accounts aren't scheduled.
+	 */
+	@Test
+	void test_accountNotFound() throws Exception {
+		accountService.create("Scheduled 7", "EUR", false);
+
+		assertThrows(AccountNotFoundException.class,
+				() -> service.schedule("Scheduled 7", "Non existing account", 10.0, Instant.now(), null));
+		assertThrows(ScheduledTransferNotFoundException.class, () -> service.find(-1L));
+	}
+
+	private ScheduledTransfer await(Long id, Predicate<ScheduledTransfer> condition) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		ScheduledTransfer transfer = service.find(id);
+		while (!condition.test(transfer) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+			transfer = service.find(id);
+		}
+		assertTrue(condition.test(transfer), "Timed out waiting for the scheduled transfer");
+		return transfer;
+	}
+
+}
@@ -0,0 +1,95 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+import es.enrique.springbootexercise.dao.AccountNameIndex;
+import es.enrique.springbootexercise.dao.sharding.AccountShards;
+import es.enrique.springbootexercise.service.impl.ShardedAccountServiceImpl;
+
+/**
+ * Measures the write throughput of the sharded account service as the number
+ * of shards grows. Run with {@code mvn test -Pbenchmark}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class ShardedAccountServiceBenchmark {
+
+	private static final int THREADS = 16;
+	private static final int ACCOUNTS = 1000;
+	private static final int OPERATIONS = 100_000;
+
+	/**
+	 * Runs the same mix of deposits and transfers against 1, 2, 4 and 8 shards.
+	 */
+	@Test
+	void benchmark_writeThroughputByShardCount() throws Exception {
+		for (int shardCount : new int[] { 1, 2, 4, 8 }) {
+			String[] urls = new String[shardCount];
+			for (int i = 0; i < shardCount; i++) {
+				urls[i] = "jdbc:h2:mem:benchmark-" + shardCount + "-" + i;
+			}
+			AccountShards shards = AccountShards.create(urls, "test", "test");
+			AccountService service = new ShardedAccountServiceImpl(shards, new AccountNameIndex(), 10_000);
+
+			for (int i = 0; i < ACCOUNTS; i++) {
+				service.create("Account " + i, "EUR", false);
+				service.deposit("Account " + i, 1000.0);
+			}
+			BigDecimal initialTotal = shards.totalMoney();
+
+			ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+			List<Callable<Integer>> workers = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				workers.add(() -> runOperations(service, OPERATIONS / THREADS));
+			}
+
+			long start = System.nanoTime();
+			int deposits = 0;
+			for (Future<Integer> worker : executor.invokeAll(workers)) {
+				deposits += worker.get();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			executor.shutdown();
+
+			System.out.printf("%d shard(s): %.0f writes/s%n", shardCount, OPERATIONS / seconds);
+			assertEquals(0, initialTotal.add(BigDecimal.valueOf(deposits)).compareTo(shards.totalMoney()));
+		}
+	}
+
+	/**
+	 * Runs a random mix of deposits and transfers of 1.
+	 *
+	 * @return The number of deposits made.
+	 */
+	private static int runOperations(AccountService service, int operations) throws Exception {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int deposits = 0;
+		for (int i = 0; i < operations; i++) {
+			String name = "Account " + random.nextInt(ACCOUNTS);
+			if (random.nextBoolean()) {
+				service.deposit(name, 1.0);
+				deposits++;
+			} else {
+				try {
+					service.transfer(name, "Account " + random.nextInt(ACCOUNTS), 1.0);
+				} catch (NegativeBalanceException e) {
+					// Rejected transfers don't move any money.
+				}
+			}
+		}
+		return deposits;
+	}
+
+}
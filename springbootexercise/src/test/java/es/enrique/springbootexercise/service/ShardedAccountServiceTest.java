@@ -0,0 +1,202 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import es.enrique.springbootexercise.dao.AccountNameIndex;
+import es.enrique.springbootexercise.dao.sharding.AccountShard;
+import es.enrique.springbootexercise.dao.sharding.AccountShards;
+import es.enrique.springbootexercise.model.AccountView;
+import es.enrique.springbootexercise.service.impl.ShardedAccountServiceImpl;
+
+/**
+ * Test cases for the sharded account service, running against three local H2
+ * databases.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class ShardedAccountServiceTest {
+
+	private static AccountShards shards;
+	private static ShardedAccountServiceImpl service;
+
+	@BeforeAll
+	static void setupShards() {
+		shards = AccountShards.create(new String[] { "jdbc:h2:mem:sharded-test-0", "jdbc:h2:mem:sharded-test-1",
+				"jdbc:h2:mem:sharded-test-2" }, "test", "test");
+		service = new ShardedAccountServiceImpl(shards, new AccountNameIndex(), 0);
+	}
+
+	/**
+	 * Returns an account name starting with the given prefix that lives in the
+	 * given shard.
+	 */
+	private static String nameInShard(String prefix, int shard) {
+		for (int i = 0;; i++) {
+			String name = prefix + " " + i;
+			if (shards.shardFor(name).getIndex() == shard) {
+				return name;
+			}
+		}
+	}
+
+	/**
+	 * Asserts that an account can be created and found, and its name can't be
+	 * reused.
+	 */
+	@Test
+	void test_createAndFind() throws Exception {
+		service.create("Sharded 1", "EUR", false);
+
+		assertEquals("Sharded 1", service.find("Sharded 1").getName());
+		assertThrows(AccountAlreadyExistsException.class, () -> service.create("Sharded 1", "EUR", false));
+		assertThrows(AccountNotFoundException.class, () -> service.find("Non existing account"));
+	}
+
+	/**
+	 * Asserts that accounts of different shards are found at once, leaving out
+	 * the names of accounts that don't exist.
+	 */
+	@Test
+	void test_findViews() throws Exception {
+		String first = nameInShard("Lookup", 0);
+		String second = nameInShard("Lookup", 2);
+		service.create(first, "EUR", false);
+		service.create(second, "EUR", false);
+
+		List<AccountView> found = service.findViews(Arrays.asList(first, second, "Non existing account"));
+
+		assertEquals(new HashSet<>(Arrays.asList(first, second)),
+				found.stream().map(AccountView::getName).collect(Collectors.toSet()));
+	}
+
+	/**
+	 * Asserts that amounts with more decimals than the currency of either account
+	 * are rejected, like the JPA storage does.
+	 */
+	@Test
+	void test_amountScale() throws Exception {
+		String euro = nameInShard("Scale euro", 0);
+		String yen = nameInShard("Scale yen", 1);
+		service.create(euro, "EUR", true);
+		service.create(yen, "JPY", false);
+
+		assertThrows(ArithmeticException.class, () -> service.deposit(euro, 0.001));
+		assertThrows(ArithmeticException.class, () -> service.withdraw(euro, 0.001));
+		assertThrows(ArithmeticException.class, () -> service.transfer(euro, yen, 10.55));
+		service.transfer(euro, yen, 10.0);
+
+		assertEquals(-10.0, service.find(euro).getMoney().getAmount().doubleValue());
+		assertEquals(10.0, service.find(yen).getMoney().getAmount().doubleValue());
+	}
+
+	/**
+	 * Asserts that a transfer between two accounts of the same shard is performed.
+	 */
+	@Test
+	void test_transferSameShard() throws Exception {
+		String from = nameInShard("Same shard from", 0);
+		String to = nameInShard("Same shard to", 0);
+		service.create(from, "EUR", false);
+		service.create(to, "EUR", false);
+		service.deposit(from, 100.0);
+
+		service.transfer(from, to, 30.0);
+
+		assertEquals(70.0, service.find(from).getMoneyDouble());
+		assertEquals(30.0, service.find(to).getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that a transfer between accounts of different shards is performed
+	 * and the total money is conserved.
+	 */
+	@Test
+	void test_transferAcrossShards() throws Exception {
+		String from = nameInShard("Cross shard from", 1);
+		String to = nameInShard("Cross shard to", 2);
+		service.create(from, "EUR", false);
+		service.create(to, "EUR", false);
+		service.deposit(from, 100.0);
+		BigDecimal total = shards.totalMoney();
+
+		service.transfer(from, to, 40.0);
+
+		assertEquals(60.0, service.find(from).getMoneyDouble());
+		assertEquals(40.0, service.find(to).getMoneyDouble());
+		assertEquals(0, total.compareTo(shards.totalMoney()));
+	}
+
+	/**
+	 * Asserts that a transfer between shards isn't performed if the sender would go
+	 * negative.
+	 */
+	@Test
+	void test_transferAcrossShards_negativeIsNotTreasury() throws Exception {
+		String from = nameInShard("Negative from", 0);
+		String to = nameInShard("Negative to", 1);
+		service.create(from, "EUR", false);
+		service.create(to, "EUR", false);
+
+		assertThrows(NegativeBalanceException.class, () -> service.transfer(from, to, 20.0));
+		assertEquals(0.0, service.find(from).getMoneyDouble());
+		assertEquals(0.0, service.find(to).getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that a transfer to a non-existing account of another shard leaves
+	 * the sender untouched.
+	 */
+	@Test
+	void test_transferAcrossShards_receiverNotFound() throws Exception {
+		String from = nameInShard("Missing receiver from", 2);
+		String to = nameInShard("Missing receiver to", 0);
+		service.create(from, "EUR", false);
+		service.deposit(from, 10.0);
+
+		assertThrows(AccountNotFoundException.class, () -> service.transfer(from, to, 5.0));
+		assertEquals(10.0, service.find(from).getMoneyDouble());
+	}
+
+	/**
+	 * Asserts that a transfer interrupted after the reservation is completed by the
+	 * settlement of pending transfers.
+	 */
+	@Test
+	void test_settlePendingTransfers() throws Exception {
+		String from = nameInShard("Interrupted from", 1);
+		String to = nameInShard("Interrupted to", 0);
+		service.create(from, "EUR", false);
+		service.create(to, "EUR", false);
+		service.deposit(from, 50.0);
+		BigDecimal total = shards.totalMoney();
+
+		// Reserve the money as the first phase does, then stop.
+		AccountShard shard = shards.shardFor(from);
+		BigDecimal money = BigDecimal.valueOf(25.0);
+		shard.inTransaction(status -> {
+			shard.addMoney(from, money.negate());
+			shard.insertReservation("interrupted-transfer", from, to, money);
+			return null;
+		});
+		assertEquals(0, total.compareTo(shards.totalMoney()));
+
+		Thread.sleep(10);
+		service.settlePendingTransfers();
+
+		assertEquals(25.0, service.find(from).getMoneyDouble());
+		assertEquals(25.0, service.find(to).getMoneyDouble());
+		assertEquals(0, total.compareTo(shards.totalMoney()));
+	}
+
+}
@@ -0,0 +1,166 @@
+package es.enrique.springbootexercise.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Test cases for the transfer netting. The window is long enough for the tests
+ * to flush the transfers themselves.
+ *
+ * @author Enrique Rosales
+ *
+ */
+@SpringBootTest(properties = { "accounts.netting.enabled=true", "accounts.netting.window=3600000",
+		"spring.datasource.url=jdbc:h2:mem:netting" })
+class TransferNettingServiceTest {
+
+	@Autowired
+	private AccountService accountService;
+
+	@Autowired
+	private TransferNettingService netting;
+
+	@Autowired
+	private AccountSweepService sweepService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	/**
+	 * Asserts that transfers back and forth are written as a single net change
+	 * per account.
+	 */
+	@Test
+	void test_flushNetMovement() throws Exception {
+		accountService.create("Netting 1", "EUR", false);
+		accountService.create("Netting 2", "EUR", false);
+		accountService.create("Netting 3", "EUR", false);
+		accountService.deposit("Netting 1", 100.0);
+		accountService.deposit("Netting 2", 100.0);
+		accountService.deposit("Netting 3", 10.0);
+		int changesBefore = countChanges();
+		double writesBefore = registry.counter("accounts.netting.writes").count();
+
+		for (int i = 0; i < 10; i++) {
+			netting.transfer("Netting 1", "Netting 2", 5.0);
+			netting.transfer("Netting 2", "Netting 1", 3.0);
+		}
+		netting.transfer("Netting 2", "Netting 3", 1.0);
+		netting.transfer("Netting 3", "Netting 2", 1.0);
+		assertEquals(100.0, balance("Netting 1"));
+
+		netting.flush();
+		assertEquals(80.0, balance("Netting 1"));
+		assertEquals(120.0, balance("Netting 2"));
+		assertEquals(10.0, balance("Netting 3"));
+		// Netting 3 cancelled out and wasn't written.
+		assertEquals(changesBefore + 2, countChanges());
+		assertEquals(writesBefore + 2, registry.counter("accounts.netting.writes").count());
+		assertEquals(0, BigDecimal.ZERO.compareTo(netting.pendingDebits("Netting 1")));
+	}
+
+	/**
+	 * Asserts that a sweep leaves the money of the pending debits to be written,
+	 * charging less fee if needed.
+	 */
+	@Test
+	void test_sweepKeepsPendingDebits() throws Exception {
+		accountService.create("Netting swept 1", "EUR", false);
+		accountService.create("Netting swept 2", "EUR", false);
+		accountService.deposit("Netting swept 1", 10.0);
+
+		netting.transfer("Netting swept 1", "Netting swept 2", 8.0);
+		sweepService.sweep("Netting pending debits", BigDecimal.ZERO, new BigDecimal("5.00"));
+		assertEquals(8.0, balance("Netting swept 1"));
+
+		netting.flush();
+		assertEquals(0.0, balance("Netting swept 1"));
+		assertEquals(8.0, balance("Netting swept 2"));
+	}
+
+	/**
+	 * Asserts that transfers are rejected as soon as the worst-case balance of the
+	 * sender would go negative, pending credits not counting.
+	 */
+	@Test
+	void test_worstCaseBalance() throws Exception {
+		accountService.create("Netting 4", "EUR", false);
+		accountService.create("Netting 5", "EUR", false);
+		accountService.create("Netting 6", "EUR", true);
+		accountService.deposit("Netting 4", 50.0);
+
+		netting.transfer("Netting 4", "Netting 5", 30.0);
+		netting.transfer("Netting 4", "Netting 5", 20.0);
+		assertThrows(NegativeBalanceException.class, () -> netting.transfer("Netting 4", "Netting 5", 1.0));
+		assertThrows(NegativeBalanceException.class, () -> netting.transfer("Netting 5", "Netting 4", 1.0));
+		// Amounts that can't be written are rejected before being accepted.
+		assertThrows(ArithmeticException.class, () -> netting.transfer("Netting 6", "Netting 4", 0.001));
+		// Direct operations see the pending debits too.
+		assertThrows(NegativeBalanceException.class, () -> accountService.withdraw("Netting 4", 1.0));
+		// Treasury accounts may go negative.
+		netting.transfer("Netting 6", "Netting 4", 10.0);
+
+		netting.flush();
+		assertEquals(10.0, balance("Netting 4"));
+		assertEquals(50.0, balance("Netting 5"));
+		assertEquals(-10.0, balance("Netting 6"));
+	}
+
+	/**
+	 * Asserts that amounts are checked against the currency of both accounts, and
+	 * that a transfer that can't be written doesn't hold back the others.
+	 */
+	@Test
+	void test_unwritableTransfer() throws Exception {
+		accountService.create("Netting 8", "EUR", true);
+		accountService.create("Netting 9", "JPY", false);
+		accountService.create("Netting 10", "EUR", false);
+		accountService.create("Netting 11", "EUR", false);
+		double failedBefore = registry.counter("accounts.netting.failed").count();
+
+		assertThrows(ArithmeticException.class, () -> netting.transfer("Netting 8", "Netting 9", 10.55));
+
+		netting.transfer("Netting 8", "Netting 10", 10.55);
+		netting.transfer("Netting 8", "Netting 11", 5.0);
+		// The receiver can no longer hold the amount once it's written.
+		jdbcTemplate.update("UPDATE accounts SET currency = 'JPY' WHERE name = 'Netting 10'");
+
+		netting.flush();
+		assertEquals(5.0, balance("Netting 11"));
+		assertEquals(-5.0, balance("Netting 8"));
+		assertEquals(failedBefore + 1, registry.counter("accounts.netting.failed").count());
+		assertEquals(0, BigDecimal.ZERO.compareTo(netting.pendingDebits("Netting 8")));
+	}
+
+	/**
+	 * Asserts that transfers between unknown accounts are rejected.
+	 */
+	@Test
+	void test_accountNotFound() throws Exception {
+		accountService.create("Netting 7", "EUR", false);
+
+		assertThrows(AccountNotFoundException.class, () -> netting.transfer("Netting 7", "Non existing account", 1.0));
+		assertThrows(AccountNotFoundException.class, () -> netting.transfer("Non existing account", "Netting 7", 1.0));
+	}
+
+	private double balance(String name) throws AccountNotFoundException {
+		return accountService.find(name).getMoney().getAmount().doubleValue();
+	}
+
+	private int countChanges() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_changes", Integer.class);
+	}
+
+}
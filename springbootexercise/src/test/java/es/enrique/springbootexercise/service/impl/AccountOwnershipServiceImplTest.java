@@ -0,0 +1,120 @@
+package es.enrique.springbootexercise.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import es.enrique.springbootexercise.dao.cluster.InMemoryLeaseCoordinator;
+
+/**
+ * Test cases for the invalidations the {@link AccountOwnershipServiceImpl}
+ * sends to other nodes, through a template that fails while the other node is
+ * unreachable.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class AccountOwnershipServiceImplTest {
+
+	private static final String OTHER = "http://other";
+	private static final long TTL = 60_000;
+
+	private static class Network extends RestTemplate {
+		private final List<String> posted = new ArrayList<>();
+		private boolean reachable;
+
+		@Override
+		public <T> ResponseEntity<T> postForEntity(String url, Object request, Class<T> responseType,
+				Object... uriVariables) {
+			posted.add(url);
+			if (!reachable) {
+				throw new ResourceAccessException("Connection refused");
+			}
+			return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+		}
+	}
+
+	private final InMemoryLeaseCoordinator coordinator = new InMemoryLeaseCoordinator();
+	private final Network network = new Network();
+	private final AccountOwnershipServiceImpl ownership = new AccountOwnershipServiceImpl(coordinator, network,
+			"http://self", 4, 8, TTL, TTL);
+
+	/**
+	 * Asserts that an eviction that doesn't reach the owner is sent again until
+	 * it does.
+	 */
+	@Test
+	void test_evictionRetriedUntilReceived() {
+		coordinator.tryAcquire("partitions/" + ownership.partitionOf("Evicted"), OTHER, TTL);
+
+		ownership.invalidate("Evicted");
+		ownership.resend();
+		assertEquals(2, network.posted.size());
+
+		network.reachable = true;
+		ownership.resend();
+		ownership.resend();
+		assertEquals(3, network.posted.size());
+		assertEquals(OTHER + "/cluster/evict?name={name}", network.posted.get(2));
+	}
+
+	/**
+	 * Asserts that an eviction is no longer sent once its node gave up the
+	 * partition of the account.
+	 */
+	@Test
+	void test_evictionDroppedWithPartition() {
+		String partition = "partitions/" + ownership.partitionOf("Moved");
+		coordinator.tryAcquire(partition, OTHER, TTL);
+
+		ownership.invalidate("Moved");
+		coordinator.release(partition, OTHER);
+		ownership.resend();
+		assertEquals(1, network.posted.size());
+	}
+
+	/**
+	 * Asserts that a clear is sent again to a member that didn't get it, only
+	 * while it stays in the cluster.
+	 */
+	@Test
+	void test_clearRetriedWhileMember() {
+		coordinator.tryAcquire("members/" + OTHER, OTHER, TTL);
+
+		ownership.invalidateAll();
+		ownership.resend();
+		assertEquals(2, network.posted.size());
+		assertEquals(OTHER + "/cluster/clear", network.posted.get(1));
+
+		coordinator.release("members/" + OTHER, OTHER);
+		ownership.resend();
+		assertEquals(2, network.posted.size());
+	}
+
+	/**
+	 * Asserts that a new account is announced again to a member that didn't get
+	 * it, until it does.
+	 */
+	@Test
+	void test_announcementRetriedUntilReceived() {
+		coordinator.tryAcquire("members/" + OTHER, OTHER, TTL);
+
+		ownership.announce(1, "Announced");
+		ownership.resend();
+		assertEquals(2, network.posted.size());
+
+		network.reachable = true;
+		ownership.resend();
+		ownership.resend();
+		assertEquals(3, network.posted.size());
+		assertEquals(OTHER + "/cluster/names?id={id}&name={name}", network.posted.get(2));
+	}
+
+}
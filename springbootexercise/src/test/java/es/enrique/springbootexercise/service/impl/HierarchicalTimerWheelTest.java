@@ -0,0 +1,80 @@
+package es.enrique.springbootexercise.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases for the {@link HierarchicalTimerWheel}.
+ *
+ * @author Enrique Rosales
+ *
+ */
+class HierarchicalTimerWheelTest {
+
+	/**
+	 * Asserts that entries due in every wheel expire exactly on their tick, after
+	 * being cascaded down.
+	 */
+	@Test
+	void test_expiresOnTime() {
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1, 0);
+		long[] dues = { 1, 255, 256, 257, 300, 16383, 16384, 20000, 1048577, 3000000, 67108864, 70000001 };
+		for (int i = 0; i < dues.length; i++) {
+			wheel.schedule(i, dues[i]);
+		}
+		assertEquals(dues.length, wheel.size());
+
+		List<Long> expired = new ArrayList<>();
+		for (int i = 0; i < dues.length; i++) {
+			wheel.advanceTo(dues[i] - 1, expired::add);
+			assertEquals(i, expired.size(), "Entry " + i + " expired early");
+			wheel.advanceTo(dues[i], expired::add);
+			assertEquals(i + 1, expired.size(), "Entry " + i + " didn't expire on time");
+			assertEquals(i, expired.get(i).longValue());
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	/**
+	 * Asserts that entries already due expire on the next tick, and that due times
+	 * are rounded up to a whole tick.
+	 */
+	@Test
+	void test_overdueAndRounding() {
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(100, 10000);
+		wheel.schedule(1, 500);
+		wheel.schedule(2, 10150);
+
+		List<Long> expired = new ArrayList<>();
+		wheel.advanceTo(10000, expired::add);
+		assertEquals(1, expired.size());
+		assertEquals(1L, expired.get(0).longValue());
+
+		wheel.advanceTo(10199, expired::add);
+		assertEquals(1, expired.size());
+		wheel.advanceTo(10200, expired::add);
+		assertEquals(2, expired.size());
+	}
+
+	/**
+	 * Asserts that many entries sharing a slot all expire.
+	 */
+	@Test
+	void test_manyEntries() {
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1, 0);
+		for (int i = 0; i < 100000; i++) {
+			wheel.schedule(i, 1000 + i % 3);
+		}
+
+		List<Long> expired = new ArrayList<>();
+		wheel.advanceTo(1002, expired::add);
+		assertEquals(100000, expired.size());
+		assertTrue(wheel.size() == 0);
+	}
+
+}